@@ -8,34 +8,53 @@ behavior = guarded(
 		exec: {
 			try {
 				
+				def moveTo = get(IsMovingTo)
+				
 				if(prop["pathfind-task"] != null) {
 					def pathfindTask = prop["pathfind-task"]
-					if(!pathfindTask.isDone())
-						return Status.RUNNING
-					
-					def result = pathfindTask.get()
-					prop["pathfind-task"] = null
 					
-					if(result == null || result.isEmpty())
-						return Status.FAILED
-					
-					def hml = create(HasMovementList)
-					hml.setMovementList result
-					
-					return Status.SUCCEEDED
+					//
+					// If our destination has changed, we don't want this path anymore.
+					if(pathfindTask.goal != moveTo.destination) {
+						pathfindTask.cancel()
+						prop["pathfind-task"] = null
+					} else {
+						if(!pathfindTask.isDone())
+							return Status.RUNNING
+						
+						def result = pathfindTask.path
+						prop["pathfind-task"] = null
+						
+						if(result == null || result.isEmpty())
+							return Status.FAILED
+						
+						def hml = create(HasMovementList)
+						hml.setMovementList result
+						
+						return Status.SUCCEEDED
+					}
 				}
 				
 				def loc = get(HasLocation)
-				def moveTo = get(IsMovingTo)
 				def map = get(HasMap)
 				
 				if(moveTo.destination == null)
 					return Status.FAILED
 				
 				def pathfinder = get(HasPathfinder)
-				if(pathfinder.pathfinder == null)
+				def grid = pathfinder.grid
+				if(grid == null)
 					return Status.RUNNING
 				
+				//
+				// If we're moving as part of a group, we can all share a single flow-field.
+				// (Unless we're pathfinding hierarchically -- a flow-field scans the whole
+				// grid, which is just what the hierarchy is there to avoid.)
+				if(moveTo.useFlowField && !pathfinder.hierarchical) {
+					prop["pathfind-task"] = followFlowField(grid, loc.location, moveTo.destination, 3)
+					return Status.RUNNING
+				}
+				
 				def known = map.map.known
 				def unknown = prop['unknown']
 				if(unknown == null || unknown.width != known.width || unknown.height != known.height)
@@ -45,12 +64,7 @@ behavior = guarded(
 				
 				prop['unknown'] = unknown
 				
-				prop["pathfind-task"] = schedule({
-					pathfinder.lock.lock()
-					def result = pathfinder.pathfinder.findPath(3, -1, unknown, null, loc.location, moveTo.destination)
-					pathfinder.lock.unlock()
-					result
-				})
+				prop["pathfind-task"] = pathfind(grid, loc.location, moveTo.destination, 3, unknown)
 				
 				return Status.RUNNING
 				
@@ -59,4 +73,8 @@ behavior = guarded(
 				t.printStackTrace()
 				return Status.FAILED
 			}
+		},
+		end: {
+			prop["pathfind-task"]?.cancel()
+			prop["pathfind-task"] = null
 		}))
\ No newline at end of file
@@ -33,23 +33,53 @@ behavior = task start: {
 						if(myMap == null)
 							return Status.RUNNING
 						
+						//
+						// Work on a snapshot, so we don't read the map while the engine is writing it.
+						def mapSnapshot = myMap.snapshot()
+						
 						prop["nearbyPoint-task"] = schedule({
+							def start = loc.getLocation()
+							
+							//
+							// The flood can't reach more than 8 cells from where we stand -- so only
+							// that window needs to be checked for floors. The cached regions are
+							// re-filled in place, rather than building new whole-map views.
+							def window = prop["window-cache"]
+							if(window == null) {
+								window = new Region(mapSnapshot.getWidth(), mapSnapshot.getHeight())
+								prop["window-cache"] = window
+							}
+							window.resizeAndEmpty(mapSnapshot.getWidth(), mapSnapshot.getHeight())
+							window.insert(start).expand8way(8)
+							
 							def floors = prop["floors-cache"]
 							if(floors == null) {
-								floors = new Region(myMap.getWidth(), myMap.getHeight())
+								floors = new Region(mapSnapshot.getWidth(), mapSnapshot.getHeight())
 								prop["floors-cache"] = floors
 							}
-							floors.refill(myMap.getSquidCharMap(), (char) '#').not()
+							floors.resizeAndEmpty(mapSnapshot.getWidth(), mapSnapshot.getHeight())
+							mapSnapshot.readRegion(window, { x, y, terrainIndex, materialIndex ->
+								if(terrainIndex < 0)
+									return
+								def tt = org.snowjak.hivemind.TerrainTypes.get().getAt(terrainIndex)
+								if(tt == null || tt.getSquidChar() != ('#' as char))
+									floors.insert(x, y)
+							})
 							
-							def known = myMap.getKnown()
+							def known = prop["known-cache"]
+							if(known == null) {
+								known = new Region(mapSnapshot.getWidth(), mapSnapshot.getHeight())
+								prop["known-cache"] = known
+							}
+							mapSnapshot.copyKnownInto(known)
 							
 							def nearby = prop["nearby-cache"]
 							if(nearby == null) {
-								nearby = new Region(myMap.getWidth(), myMap.getHeight())
+								nearby = new Region(mapSnapshot.getWidth(), mapSnapshot.getHeight())
 								prop["nearby-cache"] = nearby
 							}
-							nearby.fill(false)
-									.insert(loc.getLocation())
+							nearby.resizeAndEmpty(mapSnapshot.getWidth(), mapSnapshot.getHeight())
+									.insert(start)
 									.flood(floors.and(known), 8)
 							
 							nearby.singleRandom(RNG.get())
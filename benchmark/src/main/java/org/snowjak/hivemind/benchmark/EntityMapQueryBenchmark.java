@@ -0,0 +1,139 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snowjak.hivemind.engine.components.IsMaterial;
+import org.snowjak.hivemind.engine.components.IsSelectable;
+import org.snowjak.hivemind.map.EntityMap;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GreasedRegion;
+import squidpony.squidmath.OrderedSet;
+
+/**
+ * Compares ways of finding the {@link Entity Entities} of one {@link Family}
+ * within a sight-radius-sized region of an {@link EntityMap}:
+ * <ul>
+ * <li>{@link #getWithin()} -- {@link EntityMap#getWithin(GreasedRegion, Class)},
+ * which builds a new set each call</li>
+ * <li>{@link #collectWithin()} -- {@link EntityMap#collectWithin(GreasedRegion,
+ * Family, java.util.Collection) collectWithin()}, into a re-used set</li>
+ * <li>{@link #forEachWithin()} -- {@link EntityMap#forEachWithin(GreasedRegion,
+ * Family, Consumer) forEachWithin()}, with a re-used consumer</li>
+ * <li>{@link #countWithin()} -- {@link EntityMap#countWithin(GreasedRegion,
+ * Family) countWithin()}</li>
+ * </ul>
+ * Regions are cycled through a fixed set of random windows. The last three
+ * should show a {@code gc.alloc.rate.norm} of (about) 0 bytes/op.
+ * <p>
+ * Doesn't need LibGDX -- run with, e.g., {@code gradlew :benchmark:jmh
+ * -PjmhArgs="EntityMapQueryBenchmark"}.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx2g" })
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+public class EntityMapQueryBenchmark {
+	
+	private static final int REGIONS = 64;
+	private static final Family MATERIALS = Family.all(IsMaterial.class).get();
+	
+	@Param({ "256" })
+	public int mapSize;
+	
+	@Param({ "1024", "16384" })
+	public int entityCount;
+	
+	@Param({ "16" })
+	public int radius;
+	
+	private final EntityMap entities = new EntityMap();
+	private final OrderedSet<Entity> buffer = new OrderedSet<>();
+	
+	private int found = 0;
+	private final Consumer<Entity> counter = (e) -> found++;
+	
+	private GreasedRegion[] regions;
+	private int nextRegion = 0;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		
+		final Random rng = new Random(88);
+		
+		for (int i = 0; i < entityCount; i++) {
+			final Entity entity = new Entity();
+			if (rng.nextBoolean())
+				entity.add(new IsMaterial());
+			else
+				entity.add(new IsSelectable());
+			entities.set(Coord.get(rng.nextInt(mapSize), rng.nextInt(mapSize)), entity);
+		}
+		
+		regions = new GreasedRegion[REGIONS];
+		for (int i = 0; i < REGIONS; i++)
+			regions[i] = new GreasedRegion(mapSize, mapSize).insertCircle(
+					Coord.get(radius + rng.nextInt(mapSize - radius * 2), radius + rng.nextInt(mapSize - radius * 2)),
+					radius);
+	}
+	
+	@Benchmark
+	public int getWithin() {
+		
+		return entities.getWithin(nextRegion(), IsMaterial.class).size();
+	}
+	
+	@Benchmark
+	public int collectWithin() {
+		
+		buffer.clear();
+		return entities.collectWithin(nextRegion(), MATERIALS, buffer).size();
+	}
+	
+	@Benchmark
+	public int forEachWithin() {
+		
+		found = 0;
+		entities.forEachWithin(nextRegion(), MATERIALS, counter);
+		return found;
+	}
+	
+	@Benchmark
+	public int countWithin() {
+		
+		return entities.countWithin(nextRegion(), MATERIALS);
+	}
+	
+	private GreasedRegion nextRegion() {
+		
+		final GreasedRegion region = regions[nextRegion];
+		nextRegion = (nextRegion + 1) % REGIONS;
+		return region;
+	}
+}
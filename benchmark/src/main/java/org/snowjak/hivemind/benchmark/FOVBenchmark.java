@@ -0,0 +1,148 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snowjak.hivemind.map.ShadowcastFOV;
+import org.snowjak.hivemind.util.ExtGreasedRegion;
+
+import squidpony.squidgrid.FOV;
+import squidpony.squidgrid.Radius;
+import squidpony.squidgrid.mapping.DungeonGenerator;
+import squidpony.squidgrid.mapping.DungeonUtility;
+import squidpony.squidgrid.mapping.styled.TilesetType;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GWTRNG;
+
+/**
+ * Compares single-Entity FOV calculations, at various sight-radii:
+ * <ul>
+ * <li>{@link #reuseFOV()} -- SquidLib's {@link FOV#reuseFOV(double[][],
+ * double[][], int, int, double, Radius) FOV.reuseFOV()} over the whole map,
+ * thresholded into a visible-region</li>
+ * <li>{@link #reuseFOVWindowed()} -- as above, but over only the sight-radius'
+ * bounding-box (as {@code FOVUpdatingSystem} does for
+ * {@code FOVMethod.LIGHT_LEVELS})</li>
+ * <li>{@link #shadowcast()} -- {@link ShadowcastFOV} straight into a
+ * visible-region (as {@code FOVUpdatingSystem} does for
+ * {@code FOVMethod.SHADOWCAST})</li>
+ * </ul>
+ * Origins are cycled through a fixed set of random floor-cells.
+ * <p>
+ * Doesn't need LibGDX -- run with, e.g., {@code gradlew :benchmark:jmh
+ * -PjmhArgs="FOVBenchmark"}.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx2g" })
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+public class FOVBenchmark {
+	
+	private static final int ORIGINS = 256;
+	
+	@Param({ "128", "1024" })
+	public int mapSize;
+	
+	@Param({ "8", "16", "32" })
+	public int radius;
+	
+	private double[][] resistance, lightLevels, windowResistance, windowLightLevels;
+	private ExtGreasedRegion opaque, visible;
+	private final ShadowcastFOV shadowcastFOV = new ShadowcastFOV();
+	
+	private Coord[] origins;
+	private int nextOrigin = 0;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		
+		final GWTRNG rng = new GWTRNG(88);
+		final char[][] map = new DungeonGenerator(mapSize, mapSize, rng).generate(TilesetType.CORNER_CAVES);
+		
+		resistance = DungeonUtility.generateResistances(map);
+		lightLevels = new double[mapSize][mapSize];
+		windowResistance = new double[radius * 2 + 1][radius * 2 + 1];
+		windowLightLevels = new double[radius * 2 + 1][radius * 2 + 1];
+		
+		opaque = new ExtGreasedRegion(resistance, ShadowcastFOV.OPAQUE_RESISTANCE, Double.POSITIVE_INFINITY);
+		visible = new ExtGreasedRegion(mapSize, mapSize);
+		
+		//
+		// Keep our origins far enough from the edge that every window is full-size.
+		final ExtGreasedRegion floors = new ExtGreasedRegion(map, '.');
+		floors.and(new ExtGreasedRegion(mapSize, mapSize).insertRectangle(radius, radius, mapSize - radius * 2,
+				mapSize - radius * 2));
+		origins = new Coord[ORIGINS];
+		for (int i = 0; i < ORIGINS; i++)
+			origins[i] = floors.singleRandom(rng);
+	}
+	
+	@Benchmark
+	public ExtGreasedRegion reuseFOV() {
+		
+		final Coord origin = nextOrigin();
+		
+		FOV.reuseFOV(resistance, lightLevels, origin.x, origin.y, radius, Radius.CIRCLE);
+		visible.refill(lightLevels, 1e-4).not();
+		
+		return visible;
+	}
+	
+	@Benchmark
+	public ExtGreasedRegion reuseFOVWindowed() {
+		
+		final Coord origin = nextOrigin();
+		final int windowX = origin.x - radius, windowY = origin.y - radius;
+		
+		for (int i = 0; i < windowResistance.length; i++)
+			System.arraycopy(resistance[windowX + i], windowY, windowResistance[i], 0, windowResistance[i].length);
+		
+		FOV.reuseFOV(windowResistance, windowLightLevels, radius, radius, radius, Radius.CIRCLE);
+		
+		visible.clear();
+		for (int i = 0; i < windowLightLevels.length; i++)
+			for (int j = 0; j < windowLightLevels[i].length; j++)
+				if (windowLightLevels[i][j] >= 1e-4)
+					visible.insert(windowX + i, windowY + j);
+		
+		return visible;
+	}
+	
+	@Benchmark
+	public ExtGreasedRegion shadowcast() {
+		
+		final Coord origin = nextOrigin();
+		
+		visible.clear();
+		shadowcastFOV.calculate(opaque, origin.x, origin.y, radius, visible);
+		
+		return visible;
+	}
+	
+	private Coord nextOrigin() {
+		
+		final Coord origin = origins[nextOrigin];
+		nextOrigin = (nextOrigin + 1) % ORIGINS;
+		return origin;
+	}
+}
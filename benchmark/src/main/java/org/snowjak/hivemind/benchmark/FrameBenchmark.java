@@ -0,0 +1,41 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snowjak.hivemind.engine.Engine;
+
+/**
+ * Per-frame benchmarks: the whole {@link Engine#update(float)}, and each
+ * selected system's {@code update()} on its own.
+ * <p>
+ * This class is abstract -- see {@link FrameThroughputBenchmark} (ops/s) and
+ * {@link FrameTimeBenchmark} (per-frame time percentiles, incl. p99). Run
+ * either with {@code -prof gc} (the default for {@code gradlew :benchmark:jmh})
+ * to get allocation-rates as well.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx6g" })
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public abstract class FrameBenchmark {
+	
+	@Benchmark
+	public void engineUpdate(HeadlessEngineState engine) {
+		
+		engine.step();
+	}
+	
+	@Benchmark
+	public void systemUpdate(HeadlessEngineState engine, SystemState system) {
+		
+		system.update();
+	}
+}
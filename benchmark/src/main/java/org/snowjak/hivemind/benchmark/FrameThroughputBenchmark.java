@@ -0,0 +1,22 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * {@link FrameBenchmark}s, reported as frames (ops) per second.
+ * 
+ * @author snowjak88
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FrameThroughputBenchmark extends FrameBenchmark {
+	
+}
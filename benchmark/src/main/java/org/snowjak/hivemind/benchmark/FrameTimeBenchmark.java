@@ -0,0 +1,23 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * {@link FrameBenchmark}s, reported as sampled per-frame times (with
+ * percentiles -- p50, p90, p99, ...).
+ * 
+ * @author snowjak88
+ *
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FrameTimeBenchmark extends FrameBenchmark {
+	
+}
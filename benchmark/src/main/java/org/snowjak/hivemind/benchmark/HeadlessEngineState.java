@@ -0,0 +1,128 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.snowjak.hivemind.Context;
+import org.snowjak.hivemind.engine.Engine;
+import org.snowjak.hivemind.engine.EnginePrefabs;
+
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.ai.GdxAI;
+import com.badlogic.gdx.ai.msg.MessageManager;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+import squidpony.squidmath.CoordPacker;
+
+/**
+ * JMH {@link State} holding a headless {@link Engine}, populated via
+ * {@link EnginePrefabs#loadTest(int, int, int)} with a world-map of
+ * {@link #mapSize} x {@link #mapSize} and {@link #individuals} wandering
+ * individuals.
+ * <p>
+ * LibGDX is brought up using its headless backend, with rendering disabled --
+ * we only need {@link Gdx#files} (to load terrain, materials, factions, and
+ * prefab-scripts from the {@code assets/} directory). The benchmark thread
+ * drives the Engine itself.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@State(Scope.Benchmark)
+public class HeadlessEngineState {
+	
+	/**
+	 * Simulated frame-time passed to {@link Engine#update(float)}.
+	 */
+	public static final float FRAME_DELTA = 1f / 60f;
+	
+	/**
+	 * Number of frames to run after loading the world, so that every entity has
+	 * a populated FOV, map, and pathfinder before we start measuring.
+	 */
+	private static final int PRIMING_FRAMES = 8;
+	
+	@Param({ "128", "512", "2048" })
+	public int mapSize;
+	
+	@Param({ "8", "32" })
+	public int individuals;
+	
+	private Engine engine;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		
+		initializeHeadless();
+		
+		engine = new Engine();
+		Context.setEngine(engine);
+		EnginePrefabs.loadTest(mapSize, mapSize, individuals);
+		
+		for (int i = 0; i < PRIMING_FRAMES; i++)
+			step();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		
+		engine.clear();
+		Context.setEngine(null);
+		engine = null;
+	}
+	
+	/**
+	 * Advance the simulation by one frame, exactly as {@code App.render()} would
+	 * (minus the display).
+	 */
+	public void step() {
+		
+		GdxAI.getTimepiece().update(FRAME_DELTA);
+		MessageManager.getInstance().update();
+		engine.update(FRAME_DELTA);
+	}
+	
+	public Engine getEngine() {
+		
+		return engine;
+	}
+	
+	public <T extends EntitySystem> T getSystem(Class<T> systemType) {
+		
+		return engine.getSystem(systemType);
+	}
+	
+	private static void initializeHeadless() {
+		
+		if (Gdx.app != null)
+			return;
+		
+		synchronized (HeadlessEngineState.class) {
+			if (Gdx.app != null)
+				return;
+			
+			final HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+			//
+			// Negative render-interval == call create() and never render.
+			config.renderInterval = -1;
+			new HeadlessApplication(new ApplicationAdapter() {
+				
+				@Override
+				public void create() {
+					
+					CoordPacker.init();
+				}
+			}, config);
+		}
+	}
+}
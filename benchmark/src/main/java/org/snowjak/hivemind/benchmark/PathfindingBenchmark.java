@@ -0,0 +1,140 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snowjak.hivemind.map.HierarchicalPathfinder;
+import org.snowjak.hivemind.map.IncrementalDijkstraMap;
+import org.snowjak.hivemind.util.ExtGreasedRegion;
+
+import squidpony.squidai.DijkstraMap;
+import squidpony.squidgrid.mapping.DungeonGenerator;
+import squidpony.squidgrid.mapping.styled.TilesetType;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GWTRNG;
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * Compares ways of finding the first few steps of a path between two random
+ * floor-cells:
+ * <ul>
+ * <li>{@link #dijkstraMap()} -- {@link DijkstraMap#findPath(int, int,
+ * java.util.Collection, java.util.Collection, Coord, Coord...)
+ * DijkstraMap.findPath()}, as {@code PathfindingMethod.DIJKSTRA} does</li>
+ * <li>{@link #hierarchical()} -- {@link HierarchicalPathfinder#findPath(Coord,
+ * Coord, int, GreasedRegion) HierarchicalPathfinder.findPath()}, as
+ * {@code PathfindingMethod.HIERARCHICAL} does</li>
+ * <li>{@link #hierarchicalRepair()} -- flipping a single cell's passability,
+ * and {@link HierarchicalPathfinder#repair(GreasedRegion) repairing} the
+ * hierarchy to match</li>
+ * </ul>
+ * Start/goal pairs are cycled through a fixed set of random floor-cells.
+ * <p>
+ * Doesn't need LibGDX -- run with, e.g., {@code gradlew :benchmark:jmh
+ * -PjmhArgs="PathfindingBenchmark -p mapSize=512"}.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx3g" })
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+public class PathfindingBenchmark {
+	
+	private static final int PAIRS = 256;
+	
+	@Param({ "512", "2048" })
+	public int mapSize;
+	
+	@Param({ "3" })
+	public int length;
+	
+	@Param({ "16" })
+	public int clusterSize;
+	
+	private IncrementalDijkstraMap dijkstraMap;
+	private HierarchicalPathfinder hierarchy;
+	
+	private Coord[] starts, goals;
+	private GreasedRegion[] flips;
+	private int nextPair = 0, nextFlip = 0;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		
+		final GWTRNG rng = new GWTRNG(88);
+		final char[][] map = new DungeonGenerator(mapSize, mapSize, rng).generate(TilesetType.CORNER_CAVES);
+		
+		dijkstraMap = new IncrementalDijkstraMap(squidpony.squidgrid.Measurement.EUCLIDEAN, rng);
+		dijkstraMap.initialize(map);
+		hierarchy = new HierarchicalPathfinder(dijkstraMap, clusterSize);
+		
+		final ExtGreasedRegion floors = new ExtGreasedRegion(map, '.');
+		starts = new Coord[PAIRS];
+		goals = new Coord[PAIRS];
+		flips = new GreasedRegion[PAIRS];
+		for (int i = 0; i < PAIRS; i++) {
+			starts[i] = floors.singleRandom(rng);
+			goals[i] = floors.singleRandom(rng);
+			flips[i] = new GreasedRegion(mapSize, mapSize).insert(floors.singleRandom(rng));
+		}
+	}
+	
+	@Benchmark
+	public List<Coord> dijkstraMap() {
+		
+		final int pair = nextPair();
+		return dijkstraMap.findPath(length, -1, null, null, starts[pair], goals[pair]);
+	}
+	
+	@Benchmark
+	public List<Coord> hierarchical() {
+		
+		final int pair = nextPair();
+		return hierarchy.findPath(starts[pair], goals[pair], length, null);
+	}
+	
+	/**
+	 * Each cell is flipped to a wall on one pass through {@link #flips}, and back
+	 * again on the next -- so the map never drifts far from where it started.
+	 * 
+	 * @return
+	 */
+	@Benchmark
+	public HierarchicalPathfinder hierarchicalRepair() {
+		
+		final GreasedRegion flip = flips[nextFlip];
+		nextFlip = (nextFlip + 1) % PAIRS;
+		
+		dijkstraMap.applyChanges(flip);
+		hierarchy.repair(flip);
+		
+		return hierarchy;
+	}
+	
+	private int nextPair() {
+		
+		final int pair = nextPair;
+		nextPair = (nextPair + 1) % PAIRS;
+		return pair;
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.systems.IntervalSystem;
+
+/**
+ * JMH {@link State} selecting a single {@link EntitySystem} (by simple
+ * class-name) out of the {@link HeadlessEngineState}'s Engine, so that it can
+ * be benchmarked on its own.
+ * <p>
+ * Any system registered with the Engine may be named here (e.g., {@code -p
+ * system=LocationUpdatingSystem}); the defaults are the per-frame systems we
+ * most care about.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@State(Scope.Benchmark)
+public class SystemState {
+	
+	@Param({ "FOVUpdatingSystem", "FOVCopyingSystem", "OwnMapFOVInsertingSystem",
+			"PsychicResonanceMapUpdatingSystem", "PathfinderUpdatingSystem", "BehaviorProcessingSystem" })
+	public String system;
+	
+	private EntitySystem entitySystem;
+	private float delta;
+	
+	@Setup(Level.Trial)
+	public void setup(HeadlessEngineState engineState) {
+		
+		entitySystem = null;
+		for (EntitySystem s : engineState.getEngine().getSystems())
+			if (s.getClass().getSimpleName().equals(system)) {
+				entitySystem = s;
+				break;
+			}
+		
+		if (entitySystem == null)
+			throw new IllegalArgumentException("No system named \"" + system + "\" is registered with the Engine.");
+		
+		//
+		// Interval-systems would otherwise do nothing on most invocations.
+		if (entitySystem instanceof IntervalSystem)
+			delta = ((IntervalSystem) entitySystem).getInterval();
+		else
+			delta = HeadlessEngineState.FRAME_DELTA;
+	}
+	
+	/**
+	 * Update the selected system (and only that system) once.
+	 */
+	public void update() {
+		
+		entitySystem.update(delta);
+	}
+}
@@ -5,16 +5,21 @@ package org.snowjak.hivemind.behavior
 
 import java.util.concurrent.Callable
 import java.util.concurrent.Future
+import java.util.function.Consumer
+import java.util.function.Predicate
 
 import org.snowjak.hivemind.Context
 import org.snowjak.hivemind.Tags
 import org.snowjak.hivemind.concurrent.Executor
 import org.snowjak.hivemind.engine.components.HasMap
 import org.snowjak.hivemind.engine.systems.manager.UniqueTagManager
+import org.snowjak.hivemind.map.PathfindingGrid
+import org.snowjak.hivemind.map.PathfindingService
 
 import com.badlogic.ashley.core.Component
 import com.badlogic.ashley.core.ComponentMapper
 import com.badlogic.ashley.core.Entity
+import com.badlogic.ashley.core.Family
 import com.badlogic.gdx.ai.btree.LeafTask
 import com.badlogic.gdx.ai.btree.Task
 import com.badlogic.gdx.ai.btree.Task.Status
@@ -164,22 +169,38 @@ class BehaviorCustomLeafTask extends LeafTask<Entity> {
 	}
 	
 	public OrderedSet<Entity> entitiesIn(GreasedRegion region) {
-		povMap()?.entities?.getWithin(region) ?: new OrderedSet<>()
+		povMap()?.entities?.published?.getWithin(region) ?: new OrderedSet<>()
 	}
 	
 	public OrderedSet<Entity> entitiesIn(GreasedRegion region, Closure filter) {
-		filterBy(entitiesIn(region, filter))
+		povMap()?.entities?.published?.getWithin(region, filter as Predicate<Entity>) ?: new OrderedSet<>()
+	}
+	
+	public int countEntitiesIn(GreasedRegion region, Family family) {
+		povMap()?.entities?.published?.countWithin(region, family) ?: 0
+	}
+	
+	public void eachEntityIn(GreasedRegion region, Family family, Closure action) {
+		povMap()?.entities?.published?.forEachWithin(region, family, action as Consumer<Entity>)
 	}
 	
 	public OrderedSet<Entity> entitiesAt(Coord location) {
-		povMap()?.entities?.getAt(location) ?: new OrderedSet<>()
+		povMap()?.entities?.published?.getAt(location) ?: new OrderedSet<>()
 	}
 	
 	public OrderedSet<Entity> entitiesAt(Coord location, Closure filter) {
-		filterBy(entitiesAt(location), filter)
+		povMap()?.entities?.published?.getAt(location, filter as Predicate<Entity>) ?: new OrderedSet<>()
 	}
 	
 	public Future<?> schedule(Closure task) {
 		Executor.get().submit(task as Callable<?>)
 	}
+	
+	public PathfindingService.Ticket pathfind(PathfindingGrid grid, Coord start, Coord goal, int length, GreasedRegion impassable) {
+		PathfindingService.get().request(grid, start, goal, length, impassable)
+	}
+	
+	public PathfindingService.Ticket followFlowField(PathfindingGrid grid, Coord start, Coord goal, int length) {
+		PathfindingService.get().requestAlongFlowField(grid, start, goal, length)
+	}
 }
@@ -0,0 +1,138 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.concurrent;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Provides the ability to apply some action to every item in a {@link List},
+ * spread across the {@link ForkJoinPool#commonPool() common ForkJoinPool}, and
+ * wait for them all to finish.
+ * <p>
+ * Unlike {@link ParallelRunner}, nothing is queued per item: the list is split
+ * into contiguous batches, sized so that each worker gets a few batches to
+ * balance the load, and the calling thread works on batches too. Below a given
+ * threshold, where dispatching would cost more than it saves, the items are
+ * simply processed on the calling thread.
+ * </p>
+ * <p>
+ * As with ParallelRunner, items are independent: an exception thrown while
+ * processing one item is logged, and the rest are processed regardless.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class ForkJoinRunner {
+	
+	private static final Logger LOG = Logger.getLogger(ForkJoinRunner.class.getName());
+	
+	/**
+	 * Aim for this many batches per worker thread.
+	 */
+	private static final int BATCHES_PER_WORKER = 4;
+	
+	private final int serialThreshold;
+	
+	/**
+	 * Construct a new {@link ForkJoinRunner}.
+	 * 
+	 * @param serialThreshold
+	 *            lists with fewer than this many items will be processed on the
+	 *            calling thread
+	 */
+	public ForkJoinRunner(int serialThreshold) {
+		
+		this.serialThreshold = serialThreshold;
+	}
+	
+	/**
+	 * Apply {@code action} to every item in {@code items}. This will
+	 * <strong>block</strong> the current thread until every item has been
+	 * processed.
+	 * <p>
+	 * {@code items} must not be modified until this method returns.
+	 * </p>
+	 * 
+	 * @param items
+	 * @param action
+	 */
+	public <T> void forEach(List<T> items, Consumer<T> action) {
+		
+		final int size = items.size();
+		if (size == 0)
+			return;
+		
+		if (size < serialThreshold || ForkJoinPool.getCommonPoolParallelism() < 2) {
+			for (int i = 0; i < size; i++)
+				apply(action, items.get(i));
+		} else {
+			final int batchSize = Math.max(1,
+					size / ((ForkJoinPool.getCommonPoolParallelism() + 1) * BATCHES_PER_WORKER));
+			ForkJoinPool.commonPool().invoke(new Batch<>(items, action, 0, size, batchSize));
+		}
+	}
+	
+	/**
+	 * Apply {@code action} to a single item, logging (rather than propagating)
+	 * any exception -- so that one item's failure doesn't cost the rest of its
+	 * batch.
+	 * 
+	 * @param action
+	 * @param item
+	 */
+	private static <T> void apply(Consumer<T> action, T item) {
+		
+		try {
+			action.accept(item);
+		} catch (RuntimeException e) {
+			LOG.log(Level.SEVERE, "Unexpected exception while processing [" + item + "]!", e);
+		}
+	}
+	
+	/**
+	 * Processes the items in {@code [from, to)}, splitting in half until no more
+	 * than {@code batchSize} items remain.
+	 * 
+	 * @author snowjak88
+	 *
+	 * @param <T>
+	 */
+	private static class Batch<T> extends RecursiveAction {
+		
+		private static final long serialVersionUID = -5017336846405372125L;
+		
+		private final List<T> items;
+		private final Consumer<T> action;
+		private final int from, to, batchSize;
+		
+		public Batch(List<T> items, Consumer<T> action, int from, int to, int batchSize) {
+			
+			this.items = items;
+			this.action = action;
+			this.from = from;
+			this.to = to;
+			this.batchSize = batchSize;
+		}
+		
+		@Override
+		protected void compute() {
+			
+			if (to - from <= batchSize) {
+				for (int i = from; i < to; i++)
+					apply(action, items.get(i));
+				return;
+			}
+			
+			final int middle = (from + to) >>> 1;
+			invokeAll(new Batch<>(items, action, from, middle, batchSize),
+					new Batch<>(items, action, middle, to, batchSize));
+		}
+	}
+}
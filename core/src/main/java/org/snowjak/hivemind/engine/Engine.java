@@ -304,6 +304,15 @@ public class Engine {
 		return engine.getSystem(systemType);
 	}
 	
+	/**
+	 * @return
+	 * @see com.badlogic.ashley.core.Engine#getSystems()
+	 */
+	public ImmutableArray<EntitySystem> getSystems() {
+		
+		return engine.getSystems();
+	}
+	
 	/**
 	 * @param family
 	 * @return
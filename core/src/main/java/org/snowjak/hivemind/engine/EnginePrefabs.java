@@ -7,6 +7,7 @@ import org.snowjak.hivemind.Context;
 import org.snowjak.hivemind.Materials;
 import org.snowjak.hivemind.Materials.Material;
 import org.snowjak.hivemind.Tags;
+import org.snowjak.hivemind.config.Config;
 import org.snowjak.hivemind.engine.components.CanSensePsychicEnergy;
 import org.snowjak.hivemind.engine.components.HasLocation;
 import org.snowjak.hivemind.engine.components.HasMap;
@@ -35,9 +36,32 @@ import squidpony.squidmath.PerlinNoise;
  */
 public class EnginePrefabs {
 	
+	public static final String PREFERENCE_TEST_WORLD_WIDTH = "test-world.width",
+			PREFERENCE_TEST_WORLD_HEIGHT = "test-world.height";
+	static {
+		Config.get().register(PREFERENCE_TEST_WORLD_WIDTH, "Width (in cells) of the test world", 128, false, true);
+		Config.get().register(PREFERENCE_TEST_WORLD_HEIGHT, "Height (in cells) of the test world", 128, false, true);
+	}
+	
+	/**
+	 * Load the test world, sized according to {@link #PREFERENCE_TEST_WORLD_WIDTH}
+	 * and {@link #PREFERENCE_TEST_WORLD_HEIGHT}.
+	 */
 	public static void loadTest() {
 		
-		final int width = 128, height = 128;
+		loadTest(Config.get().getInt(PREFERENCE_TEST_WORLD_WIDTH), Config.get().getInt(PREFERENCE_TEST_WORLD_HEIGHT),
+				8);
+	}
+	
+	/**
+	 * Load the test world, sized to {@code width} x {@code height}, populated
+	 * with the player and {@code individuals} other wandering individuals.
+	 * 
+	 * @param width
+	 * @param height
+	 * @param individuals
+	 */
+	public static void loadTest(int width, int height, int individuals) {
 		
 		final Engine eng = Context.getEngine();
 		eng.clear();
@@ -69,7 +93,7 @@ public class EnginePrefabs {
 		final CanSensePsychicEnergy sense = player.create(CanSensePsychicEnergy.class);
 		sense.setRange(-1);
 		
-		for (int i = 0; i < 8; i++) {
+		for (int i = 0; i < individuals; i++) {
 			final PrefabScript ps = PrefabScript.byName("individual");
 			ps.run();
 			ps.include("mixin/at-random-floor");
@@ -3,6 +3,8 @@
  */
 package org.snowjak.hivemind.engine.components;
 
+import org.snowjak.hivemind.map.ShadowcastFOV;
+
 import com.badlogic.ashley.core.Component;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.utils.Pool.Poolable;
@@ -16,6 +18,7 @@ import com.badlogic.gdx.utils.Pool.Poolable;
 public class CanSee implements Component, Poolable {
 	
 	private int radius;
+	private FOVMethod method = FOVMethod.LIGHT_LEVELS;
 	
 	public int getRadius() {
 		
@@ -27,9 +30,40 @@ public class CanSee implements Component, Poolable {
 		this.radius = radius;
 	}
 	
+	public FOVMethod getMethod() {
+		
+		return method;
+	}
+	
+	public void setMethod(FOVMethod method) {
+		
+		this.method = method;
+	}
+	
 	@Override
 	public void reset() {
 		
 		radius = 0;
+		method = FOVMethod.LIGHT_LEVELS;
+	}
+	
+	/**
+	 * How this Entity's FOV is to be calculated.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public enum FOVMethod {
+		/**
+		 * SquidLib's shadowcasting, which calculates light-levels as well as
+		 * visibility.
+		 */
+		LIGHT_LEVELS,
+		/**
+		 * {@link ShadowcastFOV Symmetric shadowcasting}, which only calculates
+		 * visibility. Leaves the Entity's {@link HasFOV#getLightLevels()
+		 * light-levels} empty.
+		 */
+		SHADOWCAST
 	}
 }
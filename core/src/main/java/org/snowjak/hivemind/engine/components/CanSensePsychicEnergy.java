@@ -3,6 +3,8 @@
  */
 package org.snowjak.hivemind.engine.components;
 
+import org.snowjak.hivemind.util.ExtGreasedRegion;
+
 import com.badlogic.ashley.core.Component;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.utils.Pool.Poolable;
@@ -10,6 +12,10 @@ import com.badlogic.gdx.utils.Pool.Poolable;
 /**
  * Indicates that an {@link Entity} can sense "psychic-resonances". Also holds
  * that map of nearby psychic-energies.
+ * <p>
+ * Also remembers which cells of that map were {@link #getSensed() last filled},
+ * so that only those need be cleared as the Entity moves.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -18,6 +24,7 @@ public class CanSensePsychicEnergy implements Component, Poolable {
 	
 	private int range = 0;
 	private transient double[][] map = new double[1][1];
+	private transient ExtGreasedRegion sensed = null;
 	
 	public int getRange() {
 		
@@ -39,10 +46,25 @@ public class CanSensePsychicEnergy implements Component, Poolable {
 		this.map = map;
 	}
 	
+	/**
+	 * @return those cells of {@link #getMap()} which may be non-zero, or
+	 *         {@code null} if that isn't known
+	 */
+	public ExtGreasedRegion getSensed() {
+		
+		return sensed;
+	}
+	
+	public void setSensed(ExtGreasedRegion sensed) {
+		
+		this.sensed = sensed;
+	}
+	
 	@Override
 	public void reset() {
 		
 		range = 0;
 		map = new double[1][1];
+		sensed = null;
 	}
 }
@@ -3,6 +3,8 @@
  */
 package org.snowjak.hivemind.engine.components;
 
+import org.snowjak.hivemind.engine.components.CanSee.FOVMethod;
+import org.snowjak.hivemind.util.ArrayUtil;
 import org.snowjak.hivemind.util.ExtGreasedRegion;
 import org.snowjak.hivemind.util.loaders.IgnoreSerialization;
 
@@ -12,6 +14,13 @@ import com.badlogic.gdx.utils.Pool.Poolable;
 
 /**
  * Indicates that an {@link Entity} has had its FOV calculated.
+ * <p>
+ * Light-levels are only held for a window around the Entity -- the bounding-box
+ * of its sight-radius -- rather than for the whole map.
+ * {@link #getLightLevels()} returns that window, whose {@code [0][0]} lies at
+ * ({@link #getLightX()}, {@link #getLightY()}); or use
+ * {@link #getLightLevel(int, int)} to look up a cell by its map-coordinates.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -21,7 +30,12 @@ public class HasFOV implements Component, Poolable {
 	
 	private ExtGreasedRegion visible = new ExtGreasedRegion(1, 1), prevVisible = new ExtGreasedRegion(1, 1),
 			visibleDelta = new ExtGreasedRegion(1, 1), noLongerVisible = new ExtGreasedRegion(1, 1);
-	private double[][] lightLevels = new double[1][1];
+	private double[][] lightLevels = new double[0][0];
+	private int lightX = 0, lightY = 0;
+	
+	private boolean reusable = false;
+	private int reusableX = -1, reusableY = -1, reusableRadius = -1;
+	private FOVMethod reusableMethod = null;
 	
 	public ExtGreasedRegion getVisible() {
 		
@@ -63,14 +77,168 @@ public class HasFOV implements Component, Poolable {
 		this.noLongerVisible = noLongerVisible;
 	}
 	
+	/**
+	 * @return the light-level window
+	 * @see #getLightX()
+	 * @see #getLightY()
+	 */
 	public double[][] getLightLevels() {
 		
 		return lightLevels;
 	}
 	
-	public void setLightLevels(double[][] lightLevels) {
+	/**
+	 * @param lightLevels
+	 *            the new light-level window
+	 * @param lightX
+	 *            the map-location of {@code lightLevels[0][0]}
+	 * @param lightY
+	 *            the map-location of {@code lightLevels[0][0]}
+	 */
+	public void setLightLevels(double[][] lightLevels, int lightX, int lightY) {
 		
 		this.lightLevels = lightLevels;
+		this.lightX = lightX;
+		this.lightY = lightY;
+	}
+	
+	public int getLightX() {
+		
+		return lightX;
+	}
+	
+	public int getLightY() {
+		
+		return lightY;
+	}
+	
+	/**
+	 * Get the light-level at the given map-location, or {@code 0} if that location
+	 * falls outside the light-level window.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public double getLightLevel(int x, int y) {
+		
+		final int i = x - lightX, j = y - lightY;
+		if (i < 0 || j < 0 || i >= lightLevels.length || j >= lightLevels[i].length)
+			return 0d;
+		return lightLevels[i][j];
+	}
+	
+	/**
+	 * Move the light-level window to the given map-location and size, and clear
+	 * it. The existing window is reused if it's already the right size.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 */
+	public void resetLightLevels(int x, int y, int width, int height) {
+		
+		if (lightLevels.length != width || (width > 0 && lightLevels[0].length != height))
+			lightLevels = new double[width][height];
+		else
+			ArrayUtil.fill(lightLevels, 0d);
+		
+		lightX = x;
+		lightY = y;
+	}
+	
+	/**
+	 * Add another FOV's light-levels to this FOV's, growing this FOV's light-level
+	 * window as necessary to cover both.
+	 * 
+	 * @param other
+	 */
+	public void addLightLevels(HasFOV other) {
+		
+		if (other.lightLevels.length == 0 || other.lightLevels[0].length == 0)
+			return;
+		
+		final int otherWidth = other.lightLevels.length, otherHeight = other.lightLevels[0].length;
+		final int width = lightLevels.length, height = (width == 0) ? 0 : lightLevels[0].length;
+		
+		if (width == 0 || height == 0) {
+			lightLevels = ArrayUtil.copy(other.lightLevels);
+			lightX = other.lightX;
+			lightY = other.lightY;
+			return;
+		}
+		
+		final int x0 = Math.min(lightX, other.lightX), y0 = Math.min(lightY, other.lightY);
+		final int x1 = Math.max(lightX + width, other.lightX + otherWidth),
+				y1 = Math.max(lightY + height, other.lightY + otherHeight);
+		
+		if (x0 != lightX || y0 != lightY || x1 - x0 != width || y1 - y0 != height) {
+			final double[][] grown = new double[x1 - x0][y1 - y0];
+			for (int i = 0; i < width; i++)
+				System.arraycopy(lightLevels[i], 0, grown[i + lightX - x0], lightY - y0, height);
+			lightLevels = grown;
+			lightX = x0;
+			lightY = y0;
+		}
+		
+		for (int i = 0; i < otherWidth; i++) {
+			final double[] from = other.lightLevels[i], to = lightLevels[i + other.lightX - lightX];
+			final int offset = other.lightY - lightY;
+			for (int j = 0; j < otherHeight; j++)
+				to[j + offset] += from[j];
+		}
+	}
+	
+	/**
+	 * @return {@code true} if {@link #getVisible() visible} and
+	 *         {@link #getLightLevels() light-levels} still hold exactly what was
+	 *         last calculated for this Entity (and so should not be reset)
+	 */
+	public boolean isReusable() {
+		
+		return reusable;
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param method
+	 * @return {@code true} if this FOV {@link #isReusable() is reusable}, and was
+	 *         calculated from the given location and radius, by the given
+	 *         {@link FOVMethod}
+	 */
+	public boolean isReusableFor(int x, int y, int radius, FOVMethod method) {
+		
+		return reusable && reusableX == x && reusableY == y && reusableRadius == radius && reusableMethod == method;
+	}
+	
+	/**
+	 * Record that this FOV has just been calculated from the given location and
+	 * radius, by the given {@link FOVMethod}.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param method
+	 */
+	public void setReusableFor(int x, int y, int radius, FOVMethod method) {
+		
+		this.reusableX = x;
+		this.reusableY = y;
+		this.reusableRadius = radius;
+		this.reusableMethod = method;
+		this.reusable = true;
+	}
+	
+	/**
+	 * Record that this FOV no longer holds exactly what was last calculated for
+	 * this Entity -- e.g., because another Entity's FOV has been copied into it.
+	 */
+	public void invalidate() {
+		
+		reusable = false;
 	}
 	
 	@Override
@@ -80,6 +248,13 @@ public class HasFOV implements Component, Poolable {
 		prevVisible.resizeAndEmpty(1, 1);
 		visibleDelta.resizeAndEmpty(1, 1);
 		noLongerVisible.resizeAndEmpty(1, 1);
-		lightLevels = new double[1][1];
+		lightLevels = new double[0][0];
+		lightX = 0;
+		lightY = 0;
+		reusable = false;
+		reusableX = -1;
+		reusableY = -1;
+		reusableRadius = -1;
+		reusableMethod = null;
 	}
 }
@@ -25,6 +25,10 @@ public class HasMap implements Component, Poolable {
 	private EntityMap entities = new EntityMap();
 	private transient ExtGreasedRegion updatedLocations = new ExtGreasedRegion(1, 1);
 	
+	private transient GameMap syncedWith = null;
+	private transient long syncedVersion = -1;
+	private transient ExtGreasedRegion syncedVisible = new ExtGreasedRegion(1, 1);
+	
 	public GameMap getMap() {
 		
 		return map;
@@ -33,6 +37,7 @@ public class HasMap implements Component, Poolable {
 	public void setMap(GameMap map) {
 		
 		this.map = map;
+		this.syncedWith = null;
 	}
 	
 	public EntityMap getEntities() {
@@ -55,11 +60,60 @@ public class HasMap implements Component, Poolable {
 		this.updatedLocations = updatedLocations;
 	}
 	
+	/**
+	 * Record that this map's {@code visible} cells were brought up-to-date with
+	 * the given world-map, as of the given world-map {@link GameMap#getVersion()
+	 * version}.
+	 * 
+	 * @param world
+	 * @param version
+	 * @param visible
+	 */
+	public void setSynced(GameMap world, long version, ExtGreasedRegion visible) {
+		
+		this.syncedWith = world;
+		this.syncedVersion = version;
+		this.syncedVisible.remake(visible);
+	}
+	
+	/**
+	 * @param world
+	 * @return {@code true} if this map was last brought up-to-date with the given
+	 *         world-map
+	 */
+	public boolean isSyncedWith(GameMap world) {
+		
+		return map != null && syncedWith == world;
+	}
+	
+	/**
+	 * @return the world-map {@link GameMap#getVersion() version} this map was
+	 *         last brought up-to-date with
+	 * @see #setSynced(GameMap, long, ExtGreasedRegion)
+	 */
+	public long getSyncedVersion() {
+		
+		return syncedVersion;
+	}
+	
+	/**
+	 * @return those cells which were brought up-to-date at
+	 *         {@link #getSyncedVersion()}
+	 * @see #setSynced(GameMap, long, ExtGreasedRegion)
+	 */
+	public ExtGreasedRegion getSyncedVisible() {
+		
+		return syncedVisible;
+	}
+	
 	@Override
 	public void reset() {
 		
 		map = null;
 		entities.clear();
 		updatedLocations.resizeAndEmpty(0, 0);
+		syncedWith = null;
+		syncedVersion = -1;
+		syncedVisible.resizeAndEmpty(0, 0);
 	}
 }
@@ -3,8 +3,11 @@
  */
 package org.snowjak.hivemind.engine.components;
 
-import java.util.concurrent.locks.ReentrantLock;
-
+import org.snowjak.hivemind.map.GameMap;
+import org.snowjak.hivemind.map.PathfindingGrid;
+import org.snowjak.hivemind.map.PathfindingGridPool;
+import org.snowjak.hivemind.map.PathfindingService;
+import org.snowjak.hivemind.map.PathfindingService.PathfindingMethod;
 import org.snowjak.hivemind.util.loaders.IgnoreSerialization;
 
 import com.badlogic.ashley.core.Component;
@@ -14,8 +17,21 @@ import com.badlogic.gdx.utils.Pool.Poolable;
 import squidpony.squidai.DijkstraMap;
 
 /**
- * Used to cache {@link DijkstraMap} instances for {@link Entity Entities} that
- * require them.
+ * Used to hold {@link DijkstraMap} instances for {@link Entity Entities} that
+ * require them. Each Entity holds a {@link PathfindingGrid} from the
+ * {@link PathfindingGridPool}, which it may be sharing with other Entities
+ * whose maps agree on which cells are passable -- so be sure to hold the grid's
+ * {@link PathfindingGrid#getLock() lock} while searching it.
+ * <p>
+ * Also records which {@link GameMap} (and which {@link GameMap#getVersion()
+ * version} of it) the grid was last brought up-to-date with.
+ * </p>
+ * <p>
+ * Depending on the configured {@link PathfindingService#getMethod()
+ * PathfindingMethod}, the grid may be searched through its
+ * {@link PathfindingGrid#getHierarchy() hierarchy} instead -- see
+ * {@link #isHierarchical()}.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -23,30 +39,52 @@ import squidpony.squidai.DijkstraMap;
 @IgnoreSerialization
 public class HasPathfinder implements Component, Poolable {
 	
-	private DijkstraMap pathfinder;
-	private final ReentrantLock lock = new ReentrantLock();
+	private volatile PathfindingGrid grid;
+	private GameMap appliedMap;
+	private long appliedVersion = -1;
+	
+	public PathfindingGrid getGrid() {
+		
+		return grid;
+	}
+	
+	public void setGrid(PathfindingGrid grid) {
+		
+		this.grid = grid;
+	}
+	
+	/**
+	 * @return {@code true} if this Entity's grid is searched
+	 *         {@link PathfindingMethod#HIERARCHICAL hierarchically}
+	 */
+	public boolean isHierarchical() {
+		
+		return PathfindingService.get().getMethod() == PathfindingMethod.HIERARCHICAL;
+	}
 	
-	public DijkstraMap getPathfinder() {
+	public GameMap getAppliedMap() {
 		
-		return pathfinder;
+		return appliedMap;
 	}
 	
-	public void setPathfinder(DijkstraMap pathfinder) {
+	public long getAppliedVersion() {
 		
-		this.pathfinder = pathfinder;
+		return appliedVersion;
 	}
 	
-	public ReentrantLock getLock() {
+	public void setApplied(GameMap appliedMap, long appliedVersion) {
 		
-		return lock;
+		this.appliedMap = appliedMap;
+		this.appliedVersion = appliedVersion;
 	}
 	
 	@Override
 	public void reset() {
 		
-		if (lock.isLocked())
-			throw new IllegalStateException(
-					"You cannot retire a HasPathfinder component before ensuring that its lock is released!");
-		pathfinder = null;
+		if (grid != null)
+			PathfindingGridPool.get().release(grid);
+		grid = null;
+		appliedMap = null;
+		appliedVersion = -1;
 	}
 }
@@ -11,6 +11,11 @@ import squidpony.squidmath.Coord;
 
 /**
  * Indicates that an {@link Entity} is moving to a map-location.
+ * <p>
+ * If several Entities were sent to the same location together, they may
+ * {@link #isUseFlowField() use a flow-field} to get there, rather than each
+ * searching for its own path.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -18,6 +23,7 @@ import squidpony.squidmath.Coord;
 public class IsMovingTo implements Component, Poolable {
 	
 	private Coord destination;
+	private boolean useFlowField;
 	
 	public Coord getDestination() {
 		
@@ -29,9 +35,20 @@ public class IsMovingTo implements Component, Poolable {
 		this.destination = destination;
 	}
 	
+	public boolean isUseFlowField() {
+		
+		return useFlowField;
+	}
+	
+	public void setUseFlowField(boolean useFlowField) {
+		
+		this.useFlowField = useFlowField;
+	}
+	
 	@Override
 	public void reset() {
 		
 		destination = null;
+		useFlowField = false;
 	}
 }
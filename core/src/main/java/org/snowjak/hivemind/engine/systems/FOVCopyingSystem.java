@@ -139,6 +139,7 @@ public class FOVCopyingSystem extends IteratingSystem {
 			
 			if (HAS_FOV.has(copyTo)) {
 				final HasFOV destination = HAS_FOV.get(copyTo);
+				destination.invalidate();
 				
 				destination.getVisible().or(source.getVisible());
 				destination.getPrevVisible().or(source.getPrevVisible());
@@ -146,12 +147,7 @@ public class FOVCopyingSystem extends IteratingSystem {
 				destination.getVisibleDelta().remake(destination.getVisible()).xor(destination.getPrevVisible());
 				destination.getNoLongerVisible().remake(destination.getPrevVisible()).andNot(destination.getVisible());
 				
-				if (destination.getLightLevels().length != source.getLightLevels().length
-						|| destination.getLightLevels()[0].length != source.getLightLevels()[0].length)
-					destination.setLightLevels(
-							new double[source.getLightLevels().length][source.getLightLevels()[0].length]);
-				
-				ArrayUtil.addInPlace(destination.getLightLevels(), source.getLightLevels());
+				destination.addLightLevels(source);
 				
 			} else {
 				
@@ -162,7 +158,10 @@ public class FOVCopyingSystem extends IteratingSystem {
 				destination.setVisibleDelta(new ExtGreasedRegion(source.getVisibleDelta()));
 				destination.setNoLongerVisible(new ExtGreasedRegion(source.getNoLongerVisible()));
 				
-				destination.setLightLevels(source.getLightLevels());
+				//
+				// Don't share the source's light-levels -- the source may reuse them.
+				destination.setLightLevels(ArrayUtil.copy(source.getLightLevels()), source.getLightX(),
+						source.getLightY());
 				
 				copyTo.add(destination);
 			}
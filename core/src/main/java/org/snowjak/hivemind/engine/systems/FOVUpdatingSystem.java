@@ -3,26 +3,43 @@
  */
 package org.snowjak.hivemind.engine.systems;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
 import org.snowjak.hivemind.Tags;
-import org.snowjak.hivemind.concurrent.ParallelRunner;
+import org.snowjak.hivemind.concurrent.ForkJoinRunner;
+import org.snowjak.hivemind.config.Config;
 import org.snowjak.hivemind.engine.components.CanSee;
+import org.snowjak.hivemind.engine.components.CanSee.FOVMethod;
 import org.snowjak.hivemind.engine.components.HasFOV;
 import org.snowjak.hivemind.engine.components.HasLocation;
 import org.snowjak.hivemind.engine.components.HasMap;
 import org.snowjak.hivemind.engine.components.IsMaterial;
 import org.snowjak.hivemind.engine.systems.manager.UniqueTagManager;
+import org.snowjak.hivemind.map.EntityMap;
+import org.snowjak.hivemind.map.FOVCache;
+import org.snowjak.hivemind.map.GameMap;
+import org.snowjak.hivemind.map.ShadowcastFOV;
+import org.snowjak.hivemind.util.ArrayUtil;
 import org.snowjak.hivemind.util.ExtGreasedRegion;
 import org.snowjak.hivemind.util.Profiler;
 import org.snowjak.hivemind.util.Profiler.ProfilerTimer;
+import org.snowjak.hivemind.util.SpatialMap.LocationListener;
 
 import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
 import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntityListener;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.gdx.utils.ObjectMap;
 
 import squidpony.squidgrid.FOV;
 import squidpony.squidgrid.Radius;
 import squidpony.squidmath.Coord;
+import squidpony.squidmath.GreasedRegion;
 import squidpony.squidmath.OrderedSet;
 
 /**
@@ -33,27 +50,194 @@ import squidpony.squidmath.OrderedSet;
  * {@link HasMap} belonging to the {@link Tags#WORLD_MAP "world-map"-tagged}
  * Entity.
  * </p>
+ * <p>
+ * The combined visibility-resistance field (map plus {@link IsMaterial}
+ * entities) is kept from frame to frame, and only recomputed for those cells
+ * that have changed -- i.e., those in world-map chunks that have changed since
+ * the last frame (see
+ * {@link GameMap#addChangedSince(long, squidpony.squidmath.GreasedRegion)
+ * addChangedSince()}), and those where an Entity was added, moved, or removed
+ * (see {@link LocationListener}).
+ * </p>
+ * <p>
+ * An Entity's FOV is only recalculated if it has moved, its {@link CanSee}
+ * radius has changed, or any of the resistance-field within that radius has
+ * changed. Otherwise, its {@link HasFOV#isReusable() previous result} is
+ * reused.
+ * </p>
+ * <p>
+ * FOV is calculated according to each Entity's {@link CanSee#getMethod()
+ * FOVMethod}.
+ * </p>
+ * <p>
+ * Otherwise, FOV results are shared between Entities through a {@link FOVCache}
+ * (sized by {@link #PREFERENCE_FOV_CACHE_SIZE}) -- Entities standing at the same
+ * location, with the same radius and method, reuse one result, as long as none
+ * of the resistance-field within that radius has changed since. The cache's
+ * statistics are reported to the {@link Profiler}.
+ * </p>
+ * <p>
+ * Calculations are gathered up as the Entities are processed, and then run
+ * together on a {@link ForkJoinRunner}.
+ * </p>
  * 
  * @author snowjak88
  *
  */
 public class FOVUpdatingSystem extends IteratingSystem {
 	
+	public static final String PREFERENCE_FOV_CACHE_SIZE = "fov.cache-size";
+	static {
+		Config.get().register(PREFERENCE_FOV_CACHE_SIZE, "Number of FOV results to keep for reuse", 1024, false,
+				true);
+	}
+	
+	/**
+	 * Resistance-versions are tracked per square tile of 2^n cells on a side.
+	 */
+	private static final int RESISTANCE_TILE_SHIFT = 4;
+	
+	/**
+	 * With fewer than this many FOV jobs in a frame, it's cheaper to run them on
+	 * the engine's thread.
+	 */
+	private static final int SERIAL_THRESHOLD = 4;
+	
 	private final ComponentMapper<CanSee> CAN_SEE = ComponentMapper.getFor(CanSee.class);
 	private final ComponentMapper<HasFOV> HAS_FOV = ComponentMapper.getFor(HasFOV.class);
 	private final ComponentMapper<HasLocation> HAS_LOCATION = ComponentMapper.getFor(HasLocation.class);
 	private final ComponentMapper<HasMap> HAS_MAP = ComponentMapper.getFor(HasMap.class);
 	private final ComponentMapper<IsMaterial> IS_MATERIAL = ComponentMapper.getFor(IsMaterial.class);
 	
-	private final ParallelRunner parallel = new ParallelRunner();
+	private final ForkJoinRunner forkJoin = new ForkJoinRunner(SERIAL_THRESHOLD);
+	
+	/**
+	 * This frame's FOV jobs. {@link FOVJob} instances are kept from frame to frame
+	 * and reused; only the first {@link #jobCount} are current.
+	 */
+	private final List<FOVJob> jobs = new ArrayList<>();
+	private int jobCount = 0;
+	private final Consumer<FOVJob> runJob = this::runJob;
+	
+	private final FOVCache cache = new FOVCache(Config.get().getInt(PREFERENCE_FOV_CACHE_SIZE));
+	
+	/**
+	 * FOV calculations started this frame, so that other Entities needing the
+	 * same result can wait for it instead of calculating it again.
+	 */
+	private final ObjectMap<FOVCache.Key, PendingFOV> pending = new ObjectMap<>();
 	
 	private double[][] visibilityResistance = new double[1][1];
 	
+	/**
+	 * Those cells of {@link #visibilityResistance} which are
+	 * {@link ShadowcastFOV#OPAQUE_RESISTANCE opaque}.
+	 */
+	private final ExtGreasedRegion opaque = new ExtGreasedRegion(1, 1);
+	private final ThreadLocal<ShadowcastFOV> shadowcastFOV = ThreadLocal.withInitial(ShadowcastFOV::new);
+	
+	/**
+	 * Per-thread scratch-space for copying windows of
+	 * {@link #visibilityResistance}.
+	 */
+	private final ThreadLocal<double[][]> resistanceScratch = ThreadLocal.withInitial(() -> new double[0][0]);
+	
+	private GameMap resistanceMap = null;
+	private EntityMap resistanceEntities = null;
+	private final OrderedSet<Entity> resistanceEntitiesAt = new OrderedSet<>();
+	private long resistanceVersion = 0;
+	
+	/**
+	 * For each resistance-tile, the frame in which any of its
+	 * visibility-resistances last changed.
+	 */
+	private long[] resistanceTileVersions = new long[1];
+	private int resistanceTilesHigh = 1;
+	private long resistanceFrame = 0;
+	
+	/**
+	 * Cells whose visibility-resistance must be recomputed. Written by our
+	 * listeners (possibly on other threads), and so guarded by its own monitor.
+	 */
+	private final ExtGreasedRegion pendingResistance = new ExtGreasedRegion(1, 1);
+	private final ExtGreasedRegion dirtyResistance = new ExtGreasedRegion(1, 1);
+	
+	private final LocationListener<Entity> entityMovedListener = (e, from, to) -> {
+		synchronized (pendingResistance) {
+			if (from != null)
+				pendingResistance.insert(from);
+			if (to != null)
+				pendingResistance.insert(to);
+		}
+	};
+	
+	/**
+	 * If an Entity stops being processed by this system, nobody is keeping its
+	 * FOV current any more.
+	 */
+	private final EntityListener stoppedSeeingListener = new EntityListener() {
+		
+		@Override
+		public void entityAdded(Entity entity) {
+			
+			// Nothing to do here.
+		}
+		
+		@Override
+		public void entityRemoved(Entity entity) {
+			
+			if (HAS_FOV.has(entity))
+				HAS_FOV.get(entity).invalidate();
+		}
+	};
+	
+	/**
+	 * An Entity may gain or lose {@link IsMaterial} without moving.
+	 */
+	private final EntityListener materialChangedListener = new EntityListener() {
+		
+		@Override
+		public void entityAdded(Entity entity) {
+			
+			markMaterialChanged(entity);
+		}
+		
+		@Override
+		public void entityRemoved(Entity entity) {
+			
+			markMaterialChanged(entity);
+		}
+	};
+	
 	public FOVUpdatingSystem() {
 		
 		super(Family.all(HasLocation.class, CanSee.class).get());
 	}
 	
+	@Override
+	public void addedToEngine(Engine engine) {
+		
+		super.addedToEngine(engine);
+		
+		engine.addEntityListener(Family.all(IsMaterial.class).get(), materialChangedListener);
+		engine.addEntityListener(getFamily(), stoppedSeeingListener);
+	}
+	
+	@Override
+	public void removedFromEngine(Engine engine) {
+		
+		engine.removeEntityListener(materialChangedListener);
+		engine.removeEntityListener(stoppedSeeingListener);
+		if (resistanceEntities != null)
+			resistanceEntities.removeLocationListener(entityMovedListener);
+		resistanceEntities = null;
+		resistanceMap = null;
+		pending.clear();
+		clearJobs();
+		
+		super.removedFromEngine(engine);
+	}
+	
 	private UniqueTagManager utm = null;
 	private Entity worldMapEntity = null;
 	private HasMap worldMap = null;
@@ -76,7 +260,31 @@ public class FOVUpdatingSystem extends IteratingSystem {
 		
 		super.update(deltaTime);
 		
-		parallel.awaitAll();
+		runJobs();
+		
+		//
+		// Now that this frame's calculations are done, we can share them.
+		for (PendingFOV p : pending.values()) {
+			if (p.entry == null) {
+				for (HasFOV follower : p.followers)
+					follower.invalidate();
+				continue;
+			}
+			
+			cache.put(p.key, p.entry);
+			for (HasFOV follower : p.followers)
+				addJob(follower, p.key, p.entry, null);
+		}
+		runJobs();
+		pending.clear();
+		
+		final long hits = cache.getHits(), misses = cache.getMisses();
+		Profiler.get().gauge("FOVUpdatingSystem cache (hits)", hits);
+		Profiler.get().gauge("FOVUpdatingSystem cache (misses)", misses);
+		Profiler.get().gauge("FOVUpdatingSystem cache (hit-rate %)",
+				(hits + misses == 0) ? 0 : hits * 100 / (hits + misses));
+		Profiler.get().gauge("FOVUpdatingSystem cache (entries)", cache.size());
+		Profiler.get().gauge("FOVUpdatingSystem cache (bytes)", cache.getEstimatedBytes());
 		
 		timer.stop();
 		
@@ -87,16 +295,54 @@ public class FOVUpdatingSystem extends IteratingSystem {
 	
 	private void recalculateVisibilityResistance() {
 		
-		if (visibilityResistance.length != worldMap.getMap().getWidth()
-				|| visibilityResistance[0].length != worldMap.getMap().getHeight())
-			visibilityResistance = new double[worldMap.getMap().getWidth()][worldMap.getMap().getHeight()];
+		final GameMap map = worldMap.getMap();
+		final int width = map.getWidth(), height = map.getHeight();
+		
+		resistanceFrame++;
+		
+		//
+		// Make sure we're listening to the current world-map's entities.
+		if (resistanceEntities != worldMap.getEntities()) {
+			if (resistanceEntities != null)
+				resistanceEntities.removeLocationListener(entityMovedListener);
+			resistanceEntities = worldMap.getEntities();
+			if (resistanceEntities != null)
+				resistanceEntities.addLocationListener(entityMovedListener);
+			resistanceMap = null;
+		}
+		
+		synchronized (pendingResistance) {
+			if (pendingResistance.width != width || pendingResistance.height != height)
+				pendingResistance.resizeAndEmpty(width, height);
+			dirtyResistance.remake(pendingResistance);
+			pendingResistance.clear();
+		}
+		
+		//
+		// If this is a new world-map, everything needs recomputing.
+		final long version = map.getVersion();
+		if (resistanceMap != map || visibilityResistance.length != width || visibilityResistance[0].length != height) {
+			if (visibilityResistance.length != width || visibilityResistance[0].length != height)
+				visibilityResistance = new double[width][height];
+			resistanceMap = map;
+			opaque.resizeAndEmpty(width, height);
+			resistanceTilesHigh = ((height - 1) >> RESISTANCE_TILE_SHIFT) + 1;
+			resistanceTileVersions = new long[(((width - 1) >> RESISTANCE_TILE_SHIFT) + 1) * resistanceTilesHigh];
+			Arrays.fill(resistanceTileVersions, resistanceFrame);
+			dirtyResistance.fill(true);
+		} else
+			map.addChangedSince(resistanceVersion, dirtyResistance);
+		resistanceVersion = version;
 		
-		for (int x = 0; x < worldMap.getMap().getWidth(); x++)
-			for (int y = 0; y < worldMap.getMap().getHeight(); y++) {
-				
-				visibilityResistance[x][y] = worldMap.getMap().getVisibilityResistance()[x][y];
-				
-				final OrderedSet<Entity> entitiesAt = worldMap.getEntities().getAt(Coord.get(x, y));
+		final double[][] mapResistance = map.getVisibilityResistance();
+		dirtyResistance.forEachCell((x, y) -> {
+			
+			final double previousResistance = visibilityResistance[x][y];
+			visibilityResistance[x][y] = mapResistance[x][y];
+			
+			if (resistanceEntities != null) {
+				final OrderedSet<Entity> entitiesAt = resistanceEntities.collectAt(Coord.get(x, y), null,
+						resistanceEntitiesAt);
 				for (int i = 0; i < entitiesAt.size(); i++) {
 					final Entity e = entitiesAt.getAt(i);
 					if (!IS_MATERIAL.has(e))
@@ -106,8 +352,52 @@ public class FOVUpdatingSystem extends IteratingSystem {
 						continue;
 					visibilityResistance[x][y] += material.getMaterial().getVisibilityResistance();
 				}
-				
+				entitiesAt.clear();
 			}
+			
+			opaque.set(visibilityResistance[x][y] >= ShadowcastFOV.OPAQUE_RESISTANCE, x, y);
+			
+			if (visibilityResistance[x][y] != previousResistance)
+				resistanceTileVersions[(x >> RESISTANCE_TILE_SHIFT) * resistanceTilesHigh
+						+ (y >> RESISTANCE_TILE_SHIFT)] = resistanceFrame;
+		});
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @return the frame in which any visibility-resistance within the given
+	 *         radius's bounding-box last changed
+	 */
+	private long getResistanceVersion(int x, int y, int radius) {
+		
+		final int tilesWide = resistanceTileVersions.length / resistanceTilesHigh;
+		final int fromTileX = Math.max(0, (x - radius) >> RESISTANCE_TILE_SHIFT),
+				fromTileY = Math.max(0, (y - radius) >> RESISTANCE_TILE_SHIFT);
+		final int toTileX = Math.min(tilesWide - 1, (x + radius) >> RESISTANCE_TILE_SHIFT),
+				toTileY = Math.min(resistanceTilesHigh - 1, (y + radius) >> RESISTANCE_TILE_SHIFT);
+		
+		long version = 0;
+		for (int i = fromTileX; i <= toTileX; i++)
+			for (int j = fromTileY; j <= toTileY; j++)
+				version = Math.max(version, resistanceTileVersions[i * resistanceTilesHigh + j]);
+		return version;
+	}
+	
+	private void markMaterialChanged(Entity entity) {
+		
+		final EntityMap entities = resistanceEntities;
+		if (entities == null)
+			return;
+		
+		final Coord location = entities.getLocation(entity);
+		if (location == null)
+			return;
+		
+		synchronized (pendingResistance) {
+			pendingResistance.insert(location);
+		}
 	}
 	
 	@Override
@@ -119,7 +409,8 @@ public class FOVUpdatingSystem extends IteratingSystem {
 			return;
 		}
 		
-		final HasLocation location = HAS_LOCATION.get(entity);
+		final Coord location = HAS_LOCATION.get(entity).getLocation();
+		final int x = location.x, y = location.y, radius = canSee.getRadius();
 		
 		final HasFOV fov;
 		if (HAS_FOV.has(entity))
@@ -131,26 +422,151 @@ public class FOVUpdatingSystem extends IteratingSystem {
 		
 		final int width = worldMap.getMap().getWidth(), height = worldMap.getMap().getHeight();
 		
-		if (fov.getLightLevels() == null || fov.getLightLevels().length != width
-				|| fov.getLightLevels()[0].length != height)
-			fov.setLightLevels(new double[width][height]);
+		if (fov.getVisible() == null || fov.getVisible().width != width || fov.getVisible().height != height)
+			fov.invalidate();
 		
 		fov.setVisible(checkSize(fov.getVisible(), width, height));
 		fov.setPrevVisible(checkSize(fov.getPrevVisible(), width, height));
 		fov.setVisibleDelta(checkSize(fov.getVisibleDelta(), width, height));
 		fov.setNoLongerVisible(checkSize(fov.getNoLongerVisible(), width, height));
 		
-		parallel.add(() -> {
-			
-			FOV.reuseFOV(visibilityResistance, fov.getLightLevels(), location.getLocation().x, location.getLocation().y,
-					canSee.getRadius(), Radius.CIRCLE);
-			
-			fov.getVisible().refill(fov.getLightLevels(), 1e-4).not();
-			
+		//
+		// If nothing that went into this Entity's FOV has changed, we can keep what
+		// we calculated last time.
+		if (fov.isReusableFor(x, y, radius, canSee.getMethod())
+				&& !dirtyResistance.intersectsRectangle(x - radius, y - radius, radius * 2 + 1, radius * 2 + 1)) {
 			fov.getVisibleDelta().remake(fov.getPrevVisible()).xor(fov.getVisible());
 			fov.getNoLongerVisible().remake(fov.getPrevVisible()).andNot(fov.getVisible());
-			
-		});
+			return;
+		}
+		
+		fov.invalidate();
+		
+		//
+		// Has this result already been calculated -- earlier, or by some other
+		// Entity this frame?
+		final FOVCache.Key key = new FOVCache.Key(x, y, radius, canSee.getMethod(),
+				getResistanceVersion(x, y, radius));
+		
+		final PendingFOV shared = pending.get(key);
+		if (shared != null) {
+			cache.countHit();
+			shared.followers.add(fov);
+			return;
+		}
+		
+		final FOVCache.Entry cached = cache.get(key);
+		if (cached != null) {
+			addJob(fov, key, cached, null);
+			return;
+		}
+		
+		final PendingFOV calculation = new PendingFOV(key);
+		pending.put(key, calculation);
+		addJob(fov, key, null, calculation);
+	}
+	
+	private void addJob(HasFOV fov, FOVCache.Key key, FOVCache.Entry entry, PendingFOV calculation) {
+		
+		if (jobCount == jobs.size())
+			jobs.add(new FOVJob());
+		
+		final FOVJob job = jobs.get(jobCount++);
+		job.fov = fov;
+		job.key = key;
+		job.entry = entry;
+		job.calculation = calculation;
+	}
+	
+	private void runJobs() {
+		
+		forkJoin.forEach(jobs.subList(0, jobCount), runJob);
+		clearJobs();
+	}
+	
+	private void clearJobs() {
+		
+		for (int i = 0; i < jobCount; i++) {
+			final FOVJob job = jobs.get(i);
+			job.fov = null;
+			job.key = null;
+			job.entry = null;
+			job.calculation = null;
+		}
+		jobCount = 0;
+	}
+	
+	private void runJob(FOVJob job) {
+		
+		if (job.calculation != null) {
+			job.calculation.entry = calculate(job.key);
+			job.entry = job.calculation.entry;
+		}
+		
+		apply(job.entry, job.fov, job.key);
+	}
+	
+	/**
+	 * Calculate FOV, within the bounding-box of the given sight-radius.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	private FOVCache.Entry calculate(FOVCache.Key key) {
+		
+		final int x = key.getX(), y = key.getY(), radius = key.getRadius();
+		final int width = visibilityResistance.length, height = visibilityResistance[0].length;
+		
+		final int windowX = Math.max(0, x - radius), windowY = Math.max(0, y - radius);
+		final int windowWidth = Math.min(width, x + radius + 1) - windowX,
+				windowHeight = Math.min(height, y + radius + 1) - windowY;
+		
+		if (key.getMethod() == FOVMethod.SHADOWCAST) {
+			final GreasedRegion visible = new GreasedRegion(windowWidth, windowHeight);
+			shadowcastFOV.get().calculate(opaque, x, y, radius, visible, windowX, windowY);
+			return new FOVCache.Entry(windowX, windowY, visible, null);
+		}
+		
+		double[][] resistance = resistanceScratch.get();
+		if (resistance.length != windowWidth || resistance[0].length != windowHeight) {
+			resistance = new double[windowWidth][windowHeight];
+			resistanceScratch.set(resistance);
+		}
+		for (int i = 0; i < windowWidth; i++)
+			System.arraycopy(visibilityResistance[windowX + i], windowY, resistance[i], 0, windowHeight);
+		
+		final double[][] lightLevels = new double[windowWidth][windowHeight];
+		FOV.reuseFOV(resistance, lightLevels, x - windowX, y - windowY, radius, Radius.CIRCLE);
+		
+		return new FOVCache.Entry(windowX, windowY, new GreasedRegion(lightLevels, 1e-4, Double.POSITIVE_INFINITY),
+				lightLevels);
+	}
+	
+	/**
+	 * Copy the given FOV result into the given {@link HasFOV}.
+	 * 
+	 * @param entry
+	 * @param fov
+	 * @param key
+	 */
+	private void apply(FOVCache.Entry entry, HasFOV fov, FOVCache.Key key) {
+		
+		final double[][] lightLevels = entry.getLightLevels();
+		if (lightLevels == null)
+			fov.resetLightLevels(key.getX(), key.getY(), 0, 0);
+		else {
+			fov.resetLightLevels(entry.getWindowX(), entry.getWindowY(), lightLevels.length,
+					(lightLevels.length == 0) ? 0 : lightLevels[0].length);
+			ArrayUtil.fill(fov.getLightLevels(), lightLevels);
+		}
+		
+		fov.getVisible().clear();
+		fov.getVisible().insertWindow(entry.getWindowX(), entry.getWindowY(), entry.getVisible());
+		
+		fov.getVisibleDelta().remake(fov.getPrevVisible()).xor(fov.getVisible());
+		fov.getNoLongerVisible().remake(fov.getPrevVisible()).andNot(fov.getVisible());
+		
+		fov.setReusableFor(key.getX(), key.getY(), key.getRadius(), key.getMethod());
 	}
 	
 	private ExtGreasedRegion checkSize(ExtGreasedRegion region, int width, int height) {
@@ -161,4 +577,38 @@ public class FOVUpdatingSystem extends IteratingSystem {
 			region.resizeAndEmpty(width, height);
 		return region;
 	}
+	
+	/**
+	 * A single Entity's FOV for this frame -- either to be copied from
+	 * {@link #entry}, or to be calculated for {@link #calculation}.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class FOVJob {
+		
+		private HasFOV fov;
+		private FOVCache.Key key;
+		private FOVCache.Entry entry;
+		private PendingFOV calculation;
+	}
+	
+	/**
+	 * An FOV calculation started this frame, and the other {@link HasFOV}s
+	 * waiting for its result.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class PendingFOV {
+		
+		private final FOVCache.Key key;
+		private final List<HasFOV> followers = new ArrayList<>();
+		private FOVCache.Entry entry = null;
+		
+		public PendingFOV(FOVCache.Key key) {
+			
+			this.key = key;
+		}
+	}
 }
@@ -13,20 +13,37 @@ import org.snowjak.hivemind.map.GameMap;
 import org.snowjak.hivemind.util.ExtGreasedRegion;
 import org.snowjak.hivemind.util.Profiler;
 import org.snowjak.hivemind.util.Profiler.ProfilerTimer;
+import org.snowjak.hivemind.util.SpatialMap;
 
 import com.badlogic.ashley.core.ComponentMapper;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
 
-import squidpony.squidmath.Coord;
-import squidpony.squidmath.OrderedSet;
-
 /**
  * For any {@link Entity} that {@link HasFOV has its FOV calculated} and
  * {@link HasMap has a map}, this will ensure that the Entity's map is updated
  * with the visible contents of the {@link Tags#WORLD_MAP "world-map"-tagged}
  * Entity's HasMap.
+ * <p>
+ * Each Entity's map is filled from a {@link GameMap#snapshot() snapshot} of the
+ * world-map, and so shares the world-map's chunks wherever its memory hasn't
+ * diverged from the world.
+ * </p>
+ * <p>
+ * Only those cells which weren't visible when the Entity's map was last
+ * brought up-to-date, or which lie in world-map chunks that have changed since
+ * then (see
+ * {@link GameMap#addChangedSince(long, squidpony.squidmath.GreasedRegion)
+ * addChangedSince()}), are inserted -- and only those are added to its
+ * {@link HasMap#getUpdatedLocations() updated locations}. Cells which have stayed
+ * in view, and haven't changed, are already current.
+ * </p>
+ * <p>
+ * The world-map's Entities are {@link SpatialMap#syncWithin(SpatialMap,
+ * squidpony.squidmath.GreasedRegion) synced} into the Entity's map in one pass,
+ * visiting only those visible cells which actually hold an Entity.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -40,6 +57,17 @@ public class OwnMapFOVInsertingSystem extends IteratingSystem {
 	
 	private UniqueTagManager utm = null;
 	private HasMap worldMap = null;
+	private GameMap worldSnapshot = null;
+	
+	private final ExtGreasedRegion toInsert = new ExtGreasedRegion(1, 1), changedVisible = new ExtGreasedRegion(1, 1);
+	
+	/**
+	 * This tick's world-map changes since {@link #changedSinceVersion}. Most
+	 * Entities were brought up-to-date at the same version, so this is only
+	 * recomputed when the version changes.
+	 */
+	private final ExtGreasedRegion changedSince = new ExtGreasedRegion(1, 1);
+	private long changedSinceVersion = -1;
 	
 	public OwnMapFOVInsertingSystem() {
 		
@@ -63,11 +91,18 @@ public class OwnMapFOVInsertingSystem extends IteratingSystem {
 		if (worldMap.getMap() == null)
 			return;
 		
+		//
+		// Insert from a snapshot of the world-map, so that every entity's map can
+		// share the world-map's chunks rather than copying them.
+		worldSnapshot = worldMap.getMap().snapshot();
+		changedSinceVersion = -1;
+		
 		super.update(deltaTime);
 		parallel.awaitAll();
 		
 		utm = null;
 		worldMap = null;
+		worldSnapshot = null;
 		
 		timer.stop();
 	}
@@ -81,14 +116,7 @@ public class OwnMapFOVInsertingSystem extends IteratingSystem {
 		if (fov.getVisible() == null)
 			return;
 		
-		final Coord[] visibleCoords = fov.getVisible().asCoords();
-		
 		synchronized (myMap) {
-			if (myMap.getMap() == null)
-				myMap.setMap(new GameMap(worldMap.getMap(), fov.getVisible()));
-			else
-				myMap.getMap().insert(worldMap.getMap(), fov.getVisible());
-			
 			if (myMap.getUpdatedLocations() == null)
 				myMap.setUpdatedLocations(
 						new ExtGreasedRegion(worldMap.getMap().getWidth(), worldMap.getMap().getHeight()));
@@ -96,13 +124,50 @@ public class OwnMapFOVInsertingSystem extends IteratingSystem {
 					|| myMap.getUpdatedLocations().height != worldMap.getMap().getHeight())
 				myMap.getUpdatedLocations().resizeAndEmpty(worldMap.getMap().getWidth(), worldMap.getMap().getHeight());
 			
-			myMap.getUpdatedLocations().or(fov.getVisible());
-			
-			for (int i = 0; i < visibleCoords.length; i++) {
-				final OrderedSet<Entity> onWorldMap = worldMap.getEntities().getAt(visibleCoords[i]);
-				for (int j = 0; j < onWorldMap.size(); j++)
-					myMap.getEntities().set(visibleCoords[i], onWorldMap.getAt(j));
+			if (myMap.getMap() == null) {
+				myMap.setMap(new GameMap(worldSnapshot, fov.getVisible()));
+				myMap.getUpdatedLocations().or(fov.getVisible());
+				
+			} else {
+				
+				toInsert.remake(fov.getVisible());
+				
+				//
+				// Anything that was visible when this map was last brought up-to-date is
+				// still current -- unless the world has changed there since.
+				if (myMap.isSyncedWith(worldMap.getMap())) {
+					changedVisible.remake(getChangedSince(myMap.getSyncedVersion())).and(fov.getVisible());
+					toInsert.andNot(myMap.getSyncedVisible()).or(changedVisible);
+				}
+				
+				if (!toInsert.isEmpty()) {
+					myMap.getMap().insert(worldSnapshot, toInsert);
+					myMap.getUpdatedLocations().or(toInsert);
+				}
 			}
+			
+			myMap.setSynced(worldMap.getMap(), worldSnapshot.getVersion(), fov.getVisible());
+			
+			myMap.getEntities().syncWithin(worldMap.getEntities(), fov.getVisible());
+		}
+	}
+	
+	/**
+	 * @param version
+	 * @return those world-map cells which have changed since the given version
+	 */
+	private ExtGreasedRegion getChangedSince(long version) {
+		
+		if (version != changedSinceVersion) {
+			if (changedSince.width != worldSnapshot.getWidth() || changedSince.height != worldSnapshot.getHeight())
+				changedSince.resizeAndEmpty(worldSnapshot.getWidth(), worldSnapshot.getHeight());
+			else
+				changedSince.empty();
+			
+			worldSnapshot.addChangedSince(version, changedSince);
+			changedSinceVersion = version;
 		}
+		
+		return changedSince;
 	}
 }
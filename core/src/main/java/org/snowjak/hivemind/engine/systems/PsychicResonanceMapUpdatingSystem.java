@@ -132,7 +132,29 @@ public class PsychicResonanceMapUpdatingSystem extends IteratingSystem {
 			scratchRegion.insert(loc);
 			scratchRegion.expand(sense.getRange());
 			
-			sense.setMap(scratchRegion.mask(psychicEnergy, 0));
+			if (sense.getMap() == null || sense.getMap().length != psychicEnergy.length
+					|| sense.getMap()[0].length != psychicEnergy[0].length) {
+				sense.setMap(new double[psychicEnergy.length][psychicEnergy[0].length]);
+				sense.setSensed(new ExtGreasedRegion(psychicEnergy.length, psychicEnergy[0].length));
+			}
+			
+			//
+			// Zero only those cells we filled last time that are now out of range.
+			// (If we don't know what we filled last time, zero everything out of
+			// range, just this once.)
+			ExtGreasedRegion sensed = sense.getSensed();
+			if (sensed == null || sensed.width != scratchRegion.width || sensed.height != scratchRegion.height) {
+				sensed = new ExtGreasedRegion(scratchRegion);
+				sensed.not();
+				sense.setSensed(sensed);
+			} else
+				sensed.andNot(scratchRegion);
+			sensed.maskedFill(sense.getMap(), 0d);
+			
+			//
+			// Copy the global map within range -- in place, a run of cells at a time.
+			scratchRegion.maskedCopyInto(sense.getMap(), psychicEnergy);
+			sensed.remake(scratchRegion);
 			
 		} else {
 			
@@ -144,6 +166,7 @@ public class PsychicResonanceMapUpdatingSystem extends IteratingSystem {
 				sense.setMap(new double[psychicEnergy.length][psychicEnergy[0].length]);
 			
 			ArrayUtil.fill(sense.getMap(), psychicEnergy);
+			sense.setSensed(null);
 			
 		}
 	}
@@ -25,7 +25,8 @@ import org.snowjak.hivemind.gamescreen.updates.GlyphRemovedUpdate;
 import org.snowjak.hivemind.map.EntityMap;
 import org.snowjak.hivemind.util.Profiler;
 import org.snowjak.hivemind.util.Profiler.ProfilerTimer;
-import org.snowjak.hivemind.util.SpatialMap.SpatialOperation;
+import org.snowjak.hivemind.util.SpatialMap.ChangeVisitor;
+import org.snowjak.hivemind.util.SpatialMap.JournalCursor;
 
 import com.badlogic.ashley.core.ComponentMapper;
 import com.badlogic.ashley.core.Engine;
@@ -45,6 +46,13 @@ import squidpony.squidmath.OrderedSet;
  * Entities represented by {@link Glyph}s to the {@link GameScreen}, if there is
  * an {@link Entity} tagged with {@link Tags#POV} that {@link HasMap has
  * an associated GameMap}.
+ * <p>
+ * Changes to the POV-Entity's {@link EntityMap} are read from its
+ * {@link EntityMap#readChanges(JournalCursor, ChangeVisitor) change-journal}
+ * into this system's own pending sets. An Entity whose change can't be
+ * displayed yet (e.g., because its Glyph is still being created) simply stays
+ * pending until the next frame.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -66,12 +74,41 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 	private final OrderedMap<Entity, Glyph> entityToGlyph = new OrderedMap<>();
 	private final OrderedMap<Glyph, Entity> glyphToEntity = new OrderedMap<>();
 	
+	private EntityMap journalledEntities = null;
+	private JournalCursor cursor = null;
+	
+	private final OrderedSet<Entity> added = new OrderedSet<>(), moved = new OrderedSet<>(),
+			refreshed = new OrderedSet<>(), removed = new OrderedSet<>();
+	
+	private final ChangeVisitor<Entity> pendingChangeVisitor = (sequence, operation, e, from, to) -> {
+		switch (operation) {
+		case ADDED:
+			added.add(e);
+			break;
+		case MOVED:
+			moved.add(e);
+			break;
+		case REFRESH:
+			refreshed.add(e);
+			break;
+		case REMOVED:
+			removed.add(e);
+			break;
+		}
+	};
+	
 	/**
 	 * When an Entity which {@link HasGlyph has a Glyph} is removed from the Engine,
 	 * we need to ensure that we issue a Glyph-Removal update to the GameScreen.
 	 */
 	private final EntityListener glyphRemovingEntityListener;
 	
+	/**
+	 * When any Entity is removed from the Engine, it may be recycled -- so we must
+	 * forget any changes to it which are still pending.
+	 */
+	private final EntityListener pendingPurgingEntityListener;
+	
 	public DisplayedGlyphUpdatingSystem() {
 		
 		super();
@@ -97,6 +134,24 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 				}
 			}
 		};
+		
+		pendingPurgingEntityListener = new EntityListener() {
+			
+			@Override
+			public void entityAdded(Entity entity) {
+				
+				// Nothing to do
+			}
+			
+			@Override
+			public void entityRemoved(Entity entity) {
+				
+				added.remove(entity);
+				moved.remove(entity);
+				refreshed.remove(entity);
+				removed.remove(entity);
+			}
+		};
 	}
 	
 	@Override
@@ -104,12 +159,17 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 		
 		super.addedToEngine(engine);
 		engine.addEntityListener(Family.all(HasGlyph.class).get(), glyphRemovingEntityListener);
+		engine.addEntityListener(pendingPurgingEntityListener);
 	}
 	
 	@Override
 	public void removedFromEngine(Engine engine) {
 		
 		engine.removeEntityListener(glyphRemovingEntityListener);
+		engine.removeEntityListener(pendingPurgingEntityListener);
+		
+		closeJournal();
+		
 		super.removedFromEngine(engine);
 	}
 	
@@ -120,8 +180,10 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 		batched.runUpdates();
 		
 		final UniqueTagManager utm = getEngine().getSystem(UniqueTagManager.class);
-		if (!utm.has(Tags.POV))
+		if (!utm.has(Tags.POV)) {
+			closeJournal();
 			return;
+		}
 		
 		final Entity e = utm.get(Tags.POV);
 		
@@ -133,19 +195,37 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 	private void updateEntities(Entity povEntity, float deltaTime) {
 		
 		final GameScreen gameScreen = Context.getGameScreen();
-		if (gameScreen == null)
+		if (gameScreen == null) {
+			closeJournal();
 			return;
+		}
 		
-		if (!HAS_MAP.has(povEntity) || !HAS_FOV.has(povEntity))
+		if (!HAS_MAP.has(povEntity) || !HAS_FOV.has(povEntity)) {
+			closeJournal();
 			return;
+		}
 		
 		final HasMap hasMap = HAS_MAP.get(povEntity);
-		if (hasMap.getMap() == null)
+		if (hasMap.getMap() == null) {
+			closeJournal();
 			return;
+		}
 		final EntityMap entities = hasMap.getEntities();
 		
 		final HasFOV fov = HAS_FOV.get(povEntity);
 		
+		//
+		// If the POV has a different EntityMap than last time, start reading its
+		// journal afresh -- and treat everything already in it as newly-added.
+		if (entities != journalledEntities) {
+			closeJournal();
+			
+			cursor = entities.openCursor(added);
+			journalledEntities = entities;
+		}
+		
+		entities.readChanges(cursor, pendingChangeVisitor);
+		
 		//
 		// Process the recent updates in the screen-map's EntityMap.
 		//
@@ -159,7 +239,6 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 		// "ghosted", made translucent and somewhat gray.
 		//
 		{
-			final OrderedSet<Entity> added = entities.getRecentlyUpdated(SpatialOperation.ADDED);
 			for (int i = 0; i < added.size(); i++) {
 				
 				final Entity e = added.getAt(i);
@@ -201,12 +280,11 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 					Context.getGameScreen().postGameScreenUpdate(upd);
 				}
 				
-				entities.resetRecentlyUpdated(SpatialOperation.ADDED, e);
+				added.removeAt(i--);
 			}
 		}
 		
 		{
-			final OrderedSet<Entity> moved = entities.getRecentlyUpdated(SpatialOperation.MOVED);
 			for (int i = 0; i < moved.size(); i++) {
 				
 				final Entity e = moved.getAt(i);
@@ -246,12 +324,11 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 					Context.getGameScreen().postGameScreenUpdate(upd);
 				}
 				
-				entities.resetRecentlyUpdated(SpatialOperation.MOVED, e);
+				moved.removeAt(i--);
 			}
 		}
 		
 		{
-			final OrderedSet<Entity> refreshed = entities.getRecentlyUpdated(SpatialOperation.REFRESH);
 			for (int i = 0; i < refreshed.size(); i++) {
 				
 				final Entity e = refreshed.getAt(i);
@@ -292,12 +369,11 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 					Context.getGameScreen().postGameScreenUpdate(upd);
 				}
 				
-				entities.resetRecentlyUpdated(SpatialOperation.REFRESH, e);
+				refreshed.removeAt(i--);
 			}
 		}
 		
 		{
-			final OrderedSet<Entity> removed = entities.getRecentlyUpdated(SpatialOperation.REMOVED);
 			for (int i = 0; i < removed.size(); i++) {
 				
 				final Entity e = removed.getAt(i);
@@ -320,7 +396,7 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 				
 				e.remove(HasGlyph.class);
 				
-				entities.resetRecentlyUpdated(SpatialOperation.REMOVED, e);
+				removed.removeAt(i--);
 			}
 		}
 		
@@ -372,4 +448,23 @@ public class DisplayedGlyphUpdatingSystem extends EntitySystem {
 			return glyphToEntity.get(glyph);
 		}
 	}
+	
+	/**
+	 * Stop reading the current {@link EntityMap}'s journal (if any), and forget
+	 * whatever changes were pending from it. {@link HasMap} is pooled, so an
+	 * EntityMap can outlive the POV-Entity that held it -- and an open cursor
+	 * would keep its journal from ever being compacted.
+	 */
+	private void closeJournal() {
+		
+		if (journalledEntities != null)
+			journalledEntities.closeCursor(cursor);
+		journalledEntities = null;
+		cursor = null;
+		
+		added.clear();
+		moved.clear();
+		refreshed.clear();
+		removed.clear();
+	}
 }
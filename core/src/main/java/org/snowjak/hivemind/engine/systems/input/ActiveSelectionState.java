@@ -19,6 +19,8 @@ import org.snowjak.hivemind.gamescreen.GameScreen;
 import org.snowjak.hivemind.gamescreen.InputEventListener;
 import org.snowjak.hivemind.gamescreen.updates.GameScreenUpdatePool;
 import org.snowjak.hivemind.gamescreen.updates.TempSidebarLocationUpdate;
+import org.snowjak.hivemind.map.FlowField;
+import org.snowjak.hivemind.map.PathfindingGrid;
 
 import com.badlogic.ashley.core.ComponentMapper;
 import com.badlogic.ashley.core.Entity;
@@ -34,7 +36,7 @@ import squidpony.squidmath.OrderedSet;
  * <ul>
  * <li>(right-click) -- selected Entities receive {@link IsMovingTo}
  * (destination = map-cursor), potentially triggering pathfind-and-move
- * behavior</li>
+ * behavior (sharing a {@link FlowField} if more than one is selected)</li>
  * </ul>
  * 
  * @author snowjak88
@@ -65,6 +67,10 @@ public class ActiveSelectionState implements InputSystemState {
 					final Engine eng = Context.getEngine();
 					final RunnableExecutingSystem res = eng.getSystem(RunnableExecutingSystem.class);
 					
+					//
+					// Entities moving as a group can share a flow-field to their destination.
+					final boolean useFlowField = selected.size() > 1;
+					
 					for (int i = 0; i < selected.size(); i++) {
 						final Entity entity = selected.getAt(i);
 						final Coord destination = e.getMapCursor();
@@ -72,6 +78,7 @@ public class ActiveSelectionState implements InputSystemState {
 						res.submit(() -> {
 							final IsMovingTo moveTo = Context.getEngine().createComponent(IsMovingTo.class);
 							moveTo.setDestination(destination);
+							moveTo.setUseFlowField(useFlowField);
 							entity.add(moveTo);
 						});
 					}
@@ -95,12 +102,12 @@ public class ActiveSelectionState implements InputSystemState {
 								final Entity playerEntity = Context.getEngine().getSystem(UniqueTagManager.class).get(Tags.PLAYER);
 								if(playerEntity != null)
 									if(ComponentMapper.getFor(HasPathfinder.class).has(playerEntity)) {
-										final HasPathfinder hpf = ComponentMapper.getFor(HasPathfinder.class).get(playerEntity);
-										if (hpf.getLock().tryLock()) {
-											final DijkstraMap pf = hpf.getPathfinder();
-											if (pf != null && pf.physicalMap.length > loc.x && pf.physicalMap[loc.x].length > loc.y)
+										final PathfindingGrid grid = ComponentMapper.getFor(HasPathfinder.class).get(playerEntity).getGrid();
+										if (grid != null && grid.getLock().tryLock()) {
+											final DijkstraMap pf = grid.getPathfinder();
+											if (pf.physicalMap.length > loc.x && pf.physicalMap[loc.x].length > loc.y)
 												cost = pf.physicalMap[loc.x][loc.y];
-											hpf.getLock().unlock();
+											grid.getLock().unlock();
 										}
 									}
 								
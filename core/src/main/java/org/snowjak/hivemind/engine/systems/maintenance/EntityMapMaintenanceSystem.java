@@ -5,6 +5,8 @@ package org.snowjak.hivemind.engine.systems.maintenance;
 
 import org.snowjak.hivemind.engine.components.HasMap;
 import org.snowjak.hivemind.map.EntityMap;
+import org.snowjak.hivemind.util.Profiler;
+import org.snowjak.hivemind.util.Profiler.ProfilerTimer;
 
 import com.badlogic.ashley.core.ComponentMapper;
 import com.badlogic.ashley.core.Engine;
@@ -12,6 +14,7 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.EntityListener;
 import com.badlogic.ashley.core.EntitySystem;
 import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
 
 /**
  * Handles maintenance-tasks on {@link EntityMap} instances.
@@ -19,6 +22,9 @@ import com.badlogic.ashley.core.Family;
  * <li>Registers new {@link HasMap#getEntities() HasMap -> EntityMap} instances
  * with the Engine as {@link EntityListener}s</li>
  * <li>De-registers the same</li>
+ * <li>{@link EntityMap#publish() Publishes} each EntityMap's snapshot at the
+ * start of every tick, before anything else has written to it -- so other
+ * threads see each map as it stood at the end of the last tick</li>
  * </ul>
  * 
  * @author snowjak88
@@ -28,6 +34,8 @@ public class EntityMapMaintenanceSystem extends EntitySystem implements EntityLi
 	
 	private static final ComponentMapper<HasMap> HAS_MAP = ComponentMapper.getFor(HasMap.class);
 	
+	private ImmutableArray<Entity> entities = null;
+	
 	public EntityMapMaintenanceSystem() {
 		
 		super();
@@ -38,15 +46,28 @@ public class EntityMapMaintenanceSystem extends EntitySystem implements EntityLi
 		
 		super.addedToEngine(engine);
 		engine.addEntityListener(Family.all(HasMap.class).get(), this);
+		entities = engine.getEntitiesFor(Family.all(HasMap.class).get());
 	}
 	
 	@Override
 	public void removedFromEngine(Engine engine) {
 		
 		engine.removeEntityListener(this);
+		entities = null;
 		super.removedFromEngine(engine);
 	}
 	
+	@Override
+	public void update(float deltaTime) {
+		
+		final ProfilerTimer timer = Profiler.get().start("EntityMapMaintenanceSystem (overall)");
+		
+		for (int i = 0; i < entities.size(); i++)
+			HAS_MAP.get(entities.get(i)).getEntities().publish();
+		
+		timer.stop();
+	}
+	
 	@Override
 	public void entityAdded(Entity entity) {
 		
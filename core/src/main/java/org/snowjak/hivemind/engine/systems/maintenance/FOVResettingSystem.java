@@ -4,7 +4,6 @@
 package org.snowjak.hivemind.engine.systems.maintenance;
 
 import org.snowjak.hivemind.engine.components.HasFOV;
-import org.snowjak.hivemind.util.ArrayUtil;
 import org.snowjak.hivemind.util.Profiler;
 import org.snowjak.hivemind.util.Profiler.ProfilerTimer;
 
@@ -18,7 +17,8 @@ import com.badlogic.ashley.systems.IteratingSystem;
  * will, every frame:
  * <ul>
  * <li>Copy the "current-FOV" into "previous-FOV"</li>
- * <li>Clear the "current-FOV"</li>
+ * <li>Clear the "current-FOV", unless it {@link HasFOV#isReusable() can be
+ * reused}</li>
  * </ul>
  * 
  * @author snowjak88
@@ -53,8 +53,11 @@ public class FOVResettingSystem extends IteratingSystem {
 			fov.getPrevVisible().resizeAndEmpty(fov.getVisible().width, fov.getVisible().height);
 		
 		fov.getPrevVisible().remake(fov.getVisible());
-		fov.getVisible().clear();
 		
-		ArrayUtil.fill(fov.getLightLevels(), 0d);
+		if (fov.isReusable())
+			return;
+		
+		fov.getVisible().clear();
+		fov.resetLightLevels(0, 0, 0, 0);
 	}
 }
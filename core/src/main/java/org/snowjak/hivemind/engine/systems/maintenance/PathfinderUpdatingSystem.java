@@ -5,10 +5,14 @@ package org.snowjak.hivemind.engine.systems.maintenance;
 
 import java.util.logging.Logger;
 
-import org.snowjak.hivemind.RNG;
 import org.snowjak.hivemind.engine.components.CanMove;
 import org.snowjak.hivemind.engine.components.HasMap;
 import org.snowjak.hivemind.engine.components.HasPathfinder;
+import org.snowjak.hivemind.map.FlowFieldCache;
+import org.snowjak.hivemind.map.GameMap;
+import org.snowjak.hivemind.map.PathfindingGrid;
+import org.snowjak.hivemind.map.PathfindingGridPool;
+import org.snowjak.hivemind.map.PathfindingService;
 import org.snowjak.hivemind.util.EntitySubscription;
 import org.snowjak.hivemind.util.Profiler;
 import org.snowjak.hivemind.util.Profiler.ProfilerTimer;
@@ -20,13 +24,24 @@ import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IntervalIteratingSystem;
 
 import squidpony.squidai.DijkstraMap;
-import squidpony.squidgrid.Measurement;
 
 /**
  * For any {@link Entity Entities} that {@link CanMove} and {@link HasMap},
  * ensures that the Entity's associated {@link HasPathfinder} is created and the
  * cached {@link DijkstraMap} instance kept updated with the latest-and-greatest
  * HasMap content.
+ * <p>
+ * Each Entity's {@link HasPathfinder} tracks the {@link GameMap#getVersion()
+ * version} of the map it last applied -- so only those cells which have changed
+ * since are looked at, and a grid is only built outright when the Entity's map
+ * is replaced or resized. (This doesn't rely on
+ * {@link HasMap#getUpdatedLocations()}, which is shared with other systems and
+ * isn't cleared for most Entities.)
+ * </p>
+ * <p>
+ * Grids come from the {@link PathfindingGridPool}, and are shared between all
+ * Entities whose maps agree on which cells are passable.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -69,6 +84,13 @@ public class PathfinderUpdatingSystem extends IntervalIteratingSystem {
 		
 		super.updateInterval();
 		
+		Profiler.get().gauge("PathfinderUpdatingSystem grids (live)", PathfindingGridPool.get().getLiveCount());
+		Profiler.get().gauge("PathfinderUpdatingSystem grids (idle)", PathfindingGridPool.get().getIdleCount());
+		Profiler.get().gauge("PathfinderUpdatingSystem searches (pending)", PathfindingService.get().getPendingCount());
+		Profiler.get().gauge("PathfinderUpdatingSystem flow-fields (entries)", FlowFieldCache.get().getSize());
+		Profiler.get().gauge("PathfinderUpdatingSystem flow-fields (hits)", FlowFieldCache.get().getHits());
+		Profiler.get().gauge("PathfinderUpdatingSystem flow-fields (misses)", FlowFieldCache.get().getMisses());
+		
 		timer.stop();
 	}
 	
@@ -86,33 +108,24 @@ public class PathfinderUpdatingSystem extends IntervalIteratingSystem {
 		} else
 			hasPathfinder = HAS_PATHFINDER.get(entity);
 		
-		final boolean hasUpdatedCells = !(hasMap.getUpdatedLocations().isEmpty());
-		final boolean pathfinderRequiresResize = (hasPathfinder.getPathfinder() == null
-				|| hasPathfinder.getPathfinder().width != hasMap.getMap().getWidth()
-				|| hasPathfinder.getPathfinder().height != hasMap.getMap().getHeight());
+		final GameMap map = hasMap.getMap();
+		final long version = map.getVersion();
+		final PathfindingGrid grid = hasPathfinder.getGrid();
+		
+		if (grid != null && hasPathfinder.getAppliedMap() == map && hasPathfinder.getAppliedVersion() == version)
+			return;
 		
-		if (hasUpdatedCells || pathfinderRequiresResize) {
-			if (hasPathfinder.getLock().tryLock()) {
-				
-				if (hasPathfinder.getPathfinder() != null) {
-					
-					//
-					// Reinitialize an existing pathfinder if width/height don't match OR if HasMap
-					// has any recently-updated cells
-					//
-					
-					final DijkstraMap pf = hasPathfinder.getPathfinder();
-					if (pf.width != hasMap.getMap().getWidth() || pf.height != hasMap.getMap().getHeight()
-							|| !hasMap.getUpdatedLocations().isEmpty())
-						pf.initialize(hasMap.getMap().getSquidCharMap());
-					
-				} else
-					hasPathfinder.setPathfinder(
-							new DijkstraMap(hasMap.getMap().getSquidCharMap(), Measurement.EUCLIDEAN, RNG.get()));
-				
-				hasPathfinder.getLock().unlock();
-			}
-		}
+		final PathfindingGridPool pool = PathfindingGridPool.get();
+		if (grid == null || hasPathfinder.getAppliedMap() != map || grid.getPathfinder().width != map.getWidth()
+				|| grid.getPathfinder().height != map.getHeight()) {
+			
+			hasPathfinder.setGrid(pool.acquire(map));
+			if (grid != null)
+				pool.release(grid);
+			
+		} else
+			hasPathfinder.setGrid(pool.update(grid, map, hasPathfinder.getAppliedVersion()));
 		
+		hasPathfinder.setApplied(map, version);
 	}
 }
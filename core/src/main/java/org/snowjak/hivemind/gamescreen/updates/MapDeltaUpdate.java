@@ -26,14 +26,11 @@ public class MapDeltaUpdate extends MapUpdate {
 		
 		updateCoords = update.asCoords();
 		
-		synchronized (map) {
-			for (int i = 0; i < updateCoords.length; i++) {
-				terrain[updateCoords[i].x][updateCoords[i].y] = map.getTerrainIndex(updateCoords[i].x,
-						updateCoords[i].y);
-				material[updateCoords[i].x][updateCoords[i].y] = map.getMaterialIndex(updateCoords[i].x,
-						updateCoords[i].y);
-			}
-		}
+		map.readRegion(update, (x, y, t, m) -> {
+			final int i = x * height + y;
+			terrain[i] = t;
+			material[i] = m;
+		});
 		
 		this.visible.remake(visible).and(update);
 		this.update.remake(update);
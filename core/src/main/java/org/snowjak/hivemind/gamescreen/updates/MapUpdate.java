@@ -3,13 +3,14 @@
  */
 package org.snowjak.hivemind.gamescreen.updates;
 
+import java.util.Arrays;
+
 import org.snowjak.hivemind.Materials;
 import org.snowjak.hivemind.Materials.Material;
 import org.snowjak.hivemind.TerrainTypes;
 import org.snowjak.hivemind.TerrainTypes.TerrainType;
 import org.snowjak.hivemind.gamescreen.GameScreen;
 import org.snowjak.hivemind.map.GameMap;
-import org.snowjak.hivemind.util.ArrayUtil;
 
 import squidpony.squidgrid.gui.gdx.SColor;
 import squidpony.squidmath.GreasedRegion;
@@ -24,7 +25,12 @@ public class MapUpdate implements GameScreenUpdate {
 	
 	public static final float UNKNOWN_NOISE_COLOR_FLOAT = SColor.AURORA_CLOUD.mul(0.5f).toFloatBits();
 	
-	protected short[][] terrain = new short[0][0], material = new short[0][0];
+	/**
+	 * Flattened, as per {@link GameMap}: cell {@code (x,y)} is at index
+	 * {@code x * height + y}.
+	 */
+	protected short[] terrain = new short[0], material = new short[0];
+	protected int width = 0, height = 0;
 	
 	protected GreasedRegion visible = new GreasedRegion(1, 1), known = new GreasedRegion(1, 1);
 	
@@ -32,24 +38,21 @@ public class MapUpdate implements GameScreenUpdate {
 		
 		resize(map.getWidth(), map.getHeight());
 		
-		synchronized (map) {
-			for (int i = 0; i < map.getWidth(); i++)
-				for (int j = 0; j < map.getHeight(); j++) {
-					terrain[i][j] = map.getTerrainIndex(i, j);
-					material[i][j] = map.getMaterialIndex(i, j);
-				}
-		}
+		map.copyTerrainInto(terrain);
+		map.copyMaterialInto(material);
+		map.copyKnownInto(known);
 		
 		this.visible.remake(visible);
-		this.known.remake(map.getKnown());
 	}
 	
 	protected void resize(int width, int height) {
 		
-		if (terrain.length != width || terrain[0].length != height)
-			terrain = new short[width][height];
-		if (material.length != width || material[0].length != height)
-			material = new short[width][height];
+		if (this.width != width || this.height != height) {
+			terrain = new short[width * height];
+			material = new short[width * height];
+			this.width = width;
+			this.height = height;
+		}
 		
 		visible.resizeAndEmpty(width, height);
 		known.resizeAndEmpty(width, height);
@@ -58,15 +61,16 @@ public class MapUpdate implements GameScreenUpdate {
 	@Override
 	public void execute(GameScreen gameScreen) {
 		
-		for (int x = 0; x < terrain.length; x++)
-			for (int y = 0; y < terrain[x].length; y++)
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++)
 				drawCell(gameScreen, x, y);
 	}
 	
 	protected void drawCell(GameScreen gameScreen, int x, int y) {
 		
-		final TerrainType tt = TerrainTypes.get().getAt(terrain[x][y]);
-		final Material mat = Materials.get().get(material[x][y]);
+		final int i = x * height + y;
+		final TerrainType tt = TerrainTypes.get().getAt(terrain[i]);
+		final Material mat = Materials.get().get(material[i]);
 		
 		if (tt != null && mat != null)
 			gameScreen.getMapSurface().putWithReverseLight(x, y, tt.getCh(), tt.getForegroundFloat(),
@@ -79,8 +83,8 @@ public class MapUpdate implements GameScreenUpdate {
 	@Override
 	public void reset() {
 		
-		ArrayUtil.fill(terrain, (short) -1);
-		ArrayUtil.fill(material, (short) -1);
+		Arrays.fill(terrain, (short) -1);
+		Arrays.fill(material, (short) -1);
 		known.clear();
 		visible.clear();
 	}
@@ -3,6 +3,12 @@
  */
 package org.snowjak.hivemind.map;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
 import org.snowjak.hivemind.Context;
 import org.snowjak.hivemind.engine.Engine;
 import org.snowjak.hivemind.engine.components.HasMap;
@@ -13,6 +19,7 @@ import com.badlogic.ashley.core.Component;
 import com.badlogic.ashley.core.ComponentMapper;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.EntityListener;
+import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.core.PooledEngine;
 
 import squidpony.squidmath.Coord;
@@ -40,12 +47,55 @@ import squidpony.squidmath.OrderedSet;
  * by {@link EntityMapMaintenanceSystem}, at least for {@link Entity Entities}
  * that become associated with {@link HasMap} instances.
  * </p>
+ * <p>
+ * Queries by {@link Family} or {@link Component}-type use one shared
+ * {@link Predicate} per Family or type, so (unlike passing your own lambda)
+ * they allocate nothing per call.
+ * </p>
+ * <p>
+ * Threads other than the engine-thread should query this map's
+ * {@link #getPublished() published snapshot}, which
+ * {@link EntityMapMaintenanceSystem} re-publishes at the start of every tick.
+ * Note that a snapshot isn't told about Entities being removed from the engine,
+ * and so may refer to such an Entity until it is next re-published.
+ * </p>
  * 
  * @author snowjak88
  *
  */
 public class EntityMap extends SpatialMap<Entity> implements EntityListener {
 	
+	private static final Map<Family, Predicate<Entity>> FAMILY_PREDICATES = new ConcurrentHashMap<>();
+	private static final Map<Class<? extends Component>, Predicate<Entity>> COMPONENT_PREDICATES = new ConcurrentHashMap<>();
+	
+	/**
+	 * Construct a new (empty) EntityMap.
+	 */
+	public EntityMap() {
+		
+		super();
+	}
+	
+	private EntityMap(EntityMap toCopy) {
+		
+		super(toCopy);
+	}
+	
+	@Override
+	public EntityMap snapshot() {
+		
+		if (isReadOnly())
+			return this;
+		
+		return new EntityMap(this);
+	}
+	
+	@Override
+	public EntityMap getPublished() {
+		
+		return (EntityMap) super.getPublished();
+	}
+	
 	@Override
 	public void entityAdded(Entity entity) {
 		
@@ -55,12 +105,10 @@ public class EntityMap extends SpatialMap<Entity> implements EntityListener {
 	@Override
 	public void entityRemoved(Entity entity) {
 		
-		synchronized (this) {
-			//
-			// If an entity is removed from the engine, we need to discard all references to
-			// it.
-			hardRemove(entity);
-		}
+		//
+		// If an entity is removed from the engine, we need to discard all references to
+		// it.
+		hardRemove(entity);
 	}
 	
 	/**
@@ -73,7 +121,51 @@ public class EntityMap extends SpatialMap<Entity> implements EntityListener {
 	 */
 	public OrderedSet<Entity> getWithin(GreasedRegion region, Class<? extends Component> clazz) {
 		
-		return getWithin(region, (e) -> ComponentMapper.getFor(clazz).has(e));
+		return getWithin(region, predicateFor(clazz));
+	}
+	
+	/**
+	 * Give every held {@link Entity} within the given {@link GreasedRegion region},
+	 * that is a member of the given {@link Family}, to the given {@link Consumer}.
+	 * <p>
+	 * The consumer is called while holding this map's read-lock, and so must not
+	 * modify it.
+	 * </p>
+	 * 
+	 * @param region
+	 * @param family
+	 * @param consumer
+	 */
+	public void forEachWithin(GreasedRegion region, Family family, Consumer<Entity> consumer) {
+		
+		forEachWithin(region, predicateFor(family), consumer);
+	}
+	
+	/**
+	 * Count the held {@link Entity Entities} within the given {@link GreasedRegion
+	 * region} that are members of the given {@link Family}.
+	 * 
+	 * @param region
+	 * @param family
+	 * @return
+	 */
+	public int countWithin(GreasedRegion region, Family family) {
+		
+		return countWithin(region, predicateFor(family));
+	}
+	
+	/**
+	 * Add every held {@link Entity} within the given {@link GreasedRegion region},
+	 * that is a member of the given {@link Family}, to the given collection.
+	 * 
+	 * @param region
+	 * @param family
+	 * @param into
+	 * @return {@code into}
+	 */
+	public <C extends Collection<? super Entity>> C collectWithin(GreasedRegion region, Family family, C into) {
+		
+		return collectWithin(region, predicateFor(family), into);
 	}
 	
 	/**
@@ -86,6 +178,46 @@ public class EntityMap extends SpatialMap<Entity> implements EntityListener {
 	 */
 	public OrderedSet<Entity> getAt(Coord location, Class<? extends Component> clazz) {
 		
-		return getAt(location, (e) -> ComponentMapper.getFor(clazz).has(e));
+		return getAt(location, predicateFor(clazz));
+	}
+	
+	/**
+	 * Give every held {@link Entity} at the given {@link Coord location}, that is a
+	 * member of the given {@link Family}, to the given {@link Consumer}.
+	 * <p>
+	 * The consumer is called while holding this map's read-lock, and so must not
+	 * modify it.
+	 * </p>
+	 * 
+	 * @param location
+	 * @param family
+	 * @param consumer
+	 */
+	public void forEachAt(Coord location, Family family, Consumer<Entity> consumer) {
+		
+		forEachAt(location, predicateFor(family), consumer);
+	}
+	
+	/**
+	 * Count the held {@link Entity Entities} at the given {@link Coord location}
+	 * that are members of the given {@link Family}.
+	 * 
+	 * @param location
+	 * @param family
+	 * @return
+	 */
+	public int countAt(Coord location, Family family) {
+		
+		return countAt(location, predicateFor(family));
+	}
+	
+	private static Predicate<Entity> predicateFor(Family family) {
+		
+		return FAMILY_PREDICATES.computeIfAbsent(family, f -> f::matches);
+	}
+	
+	private static Predicate<Entity> predicateFor(Class<? extends Component> clazz) {
+		
+		return COMPONENT_PREDICATES.computeIfAbsent(clazz, c -> ComponentMapper.getFor(c)::has);
 	}
 }
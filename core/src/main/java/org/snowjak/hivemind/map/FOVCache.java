@@ -0,0 +1,275 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.map;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.snowjak.hivemind.engine.components.CanSee.FOVMethod;
+import org.snowjak.hivemind.util.cache.LRUMappedCache;
+
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * A bounded, least-recently-used cache of FOV results, so that Entities
+ * standing at the same location with the same sight-radius can share one
+ * calculation.
+ * <p>
+ * FOV results are {@link Key keyed} by everything that goes into them: the
+ * origin, the radius, the {@link FOVMethod}, and a "resistance-version" -- some
+ * number that changes whenever any of the visibility-resistances within the
+ * radius change. A result calculated against out-of-date resistances will
+ * never be found again, and so eventually ages out of the cache.
+ * </p>
+ * <p>
+ * Results are held as {@link Entry windows} onto the map, only as large as the
+ * radius' bounding-box.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class FOVCache {
+	
+	private final LRUMappedCache<Key, Entry> cache;
+	
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), bytes = new AtomicLong();
+	
+	/**
+	 * Construct a new {@link FOVCache}.
+	 * 
+	 * @param maxEntries
+	 *            the cache will hold no more than so-many FOV results
+	 */
+	public FOVCache(int maxEntries) {
+		
+		this.cache = new LRUMappedCache<>(maxEntries, (k, e) -> bytes.addAndGet(-e.getEstimatedBytes()), (k) -> null,
+				(k) -> null);
+	}
+	
+	/**
+	 * Look up the FOV result for the given key, counting the lookup as a hit or a
+	 * miss.
+	 * 
+	 * @param key
+	 * @return the cached result, or {@code null} if there isn't one
+	 */
+	public Entry get(Key key) {
+		
+		final Entry entry = cache.getIfPresent(key);
+		if (entry == null)
+			misses.incrementAndGet();
+		else
+			hits.incrementAndGet();
+		return entry;
+	}
+	
+	/**
+	 * Record a hit that was satisfied without looking in this cache -- e.g., by
+	 * another Entity's calculation in the same frame.
+	 */
+	public void countHit() {
+		
+		hits.incrementAndGet();
+	}
+	
+	/**
+	 * Store the given FOV result. If this cache already holds a result for this
+	 * key, it is kept instead.
+	 * 
+	 * @param key
+	 * @param entry
+	 */
+	public void put(Key key, Entry entry) {
+		
+		synchronized (cache) {
+			if (cache.has(key))
+				return;
+			cache.set(key, entry);
+			bytes.addAndGet(entry.getEstimatedBytes());
+		}
+	}
+	
+	/**
+	 * @return the number of FOV results currently held
+	 */
+	public int size() {
+		
+		return cache.size();
+	}
+	
+	/**
+	 * @return the number of lookups that found a result
+	 */
+	public long getHits() {
+		
+		return hits.get();
+	}
+	
+	/**
+	 * @return the number of lookups that didn't find a result
+	 */
+	public long getMisses() {
+		
+		return misses.get();
+	}
+	
+	/**
+	 * @return a rough estimate of the memory taken by the FOV results currently
+	 *         held, in bytes
+	 */
+	public long getEstimatedBytes() {
+		
+		return bytes.get();
+	}
+	
+	/**
+	 * Identifies a single FOV calculation.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static class Key {
+		
+		private final int x, y, radius;
+		private final FOVMethod method;
+		private final long resistanceVersion;
+		
+		/**
+		 * @param x
+		 *            FOV origin
+		 * @param y
+		 *            FOV origin
+		 * @param radius
+		 * @param method
+		 * @param resistanceVersion
+		 *            changes whenever any visibility-resistance within
+		 *            {@code radius} of the origin changes
+		 */
+		public Key(int x, int y, int radius, FOVMethod method, long resistanceVersion) {
+			
+			this.x = x;
+			this.y = y;
+			this.radius = radius;
+			this.method = method;
+			this.resistanceVersion = resistanceVersion;
+		}
+		
+		public int getX() {
+			
+			return x;
+		}
+		
+		public int getY() {
+			
+			return y;
+		}
+		
+		public int getRadius() {
+			
+			return radius;
+		}
+		
+		public FOVMethod getMethod() {
+			
+			return method;
+		}
+		
+		public long getResistanceVersion() {
+			
+			return resistanceVersion;
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			int result = x;
+			result = 31 * result + y;
+			result = 31 * result + radius;
+			result = 31 * result + method.hashCode();
+			result = 31 * result + Long.hashCode(resistanceVersion);
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return x == other.x && y == other.y && radius == other.radius && method == other.method
+					&& resistanceVersion == other.resistanceVersion;
+		}
+	}
+	
+	/**
+	 * A single FOV result, held as a window onto the map. Entries are shared, and
+	 * so must not be modified.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static class Entry {
+		
+		private final int windowX, windowY;
+		private final GreasedRegion visible;
+		private final double[][] lightLevels;
+		
+		/**
+		 * @param windowX
+		 *            the map-location of this window's {@code (0,0)}
+		 * @param windowY
+		 *            the map-location of this window's {@code (0,0)}
+		 * @param visible
+		 *            visible cells, relative to the window
+		 * @param lightLevels
+		 *            light-levels, relative to the window -- or {@code null}, if
+		 *            none were calculated
+		 */
+		public Entry(int windowX, int windowY, GreasedRegion visible, double[][] lightLevels) {
+			
+			this.windowX = windowX;
+			this.windowY = windowY;
+			this.visible = visible;
+			this.lightLevels = lightLevels;
+		}
+		
+		public int getWindowX() {
+			
+			return windowX;
+		}
+		
+		public int getWindowY() {
+			
+			return windowY;
+		}
+		
+		public GreasedRegion getVisible() {
+			
+			return visible;
+		}
+		
+		/**
+		 * @return the light-level window, or {@code null} if no light-levels were
+		 *         calculated
+		 */
+		public double[][] getLightLevels() {
+			
+			return lightLevels;
+		}
+		
+		/**
+		 * @return a rough estimate of the memory taken by this entry, in bytes
+		 */
+		public long getEstimatedBytes() {
+			
+			long total = 64 + (long) visible.data.length * 8;
+			if (lightLevels != null)
+				for (double[] column : lightLevels)
+					total += 16 + (long) column.length * 8;
+			return total;
+		}
+	}
+}
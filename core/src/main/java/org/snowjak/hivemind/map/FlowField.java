@@ -0,0 +1,162 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.map;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import squidpony.squidai.DijkstraMap;
+import squidpony.squidgrid.Direction;
+import squidpony.squidgrid.Measurement;
+import squidpony.squidmath.Coord;
+
+/**
+ * The distance from every cell of a {@link PathfindingGrid} to a single goal,
+ * as found by one {@link DijkstraMap} scan. Any number of Entities heading for
+ * the same goal can read their next step from it, without searching for
+ * themselves.
+ * <p>
+ * A FlowField is immutable once built, so it may be read from any thread. See
+ * {@link FlowFieldCache}.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class FlowField {
+	
+	private final Coord goal;
+	private final long gridVersion;
+	private final int width, height;
+	private final float[] distances;
+	private final Direction[] directions;
+	
+	/**
+	 * Construct a new FlowField from the given {@link DijkstraMap}, which has
+	 * just been scanned toward {@code goal}.
+	 * 
+	 * @param goal
+	 * @param gridVersion
+	 *            the {@link PathfindingGrid#getVersion() version} of the grid
+	 *            whose costs were scanned
+	 * @param scanned
+	 */
+	public FlowField(Coord goal, long gridVersion, DijkstraMap scanned) {
+		
+		this.goal = goal;
+		this.gridVersion = gridVersion;
+		this.width = scanned.width;
+		this.height = scanned.height;
+		this.directions = (scanned.measurement == Measurement.MANHATTAN) ? Direction.CARDINALS : Direction.OUTWARDS;
+		
+		this.distances = new float[width * height];
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++)
+				distances[x * height + y] = (float) scanned.gradientMap[x][y];
+	}
+	
+	public Coord getGoal() {
+		
+		return goal;
+	}
+	
+	public long getGridVersion() {
+		
+		return gridVersion;
+	}
+	
+	public int getWidth() {
+		
+		return width;
+	}
+	
+	public int getHeight() {
+		
+		return height;
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @return the distance from {@code (x,y)} to this field's goal, or something
+	 *         no less than {@link DijkstraMap#FLOOR} if the goal can't be reached
+	 *         from there
+	 */
+	public double getDistance(int x, int y) {
+		
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return DijkstraMap.DARK;
+		
+		return distances[x * height + y];
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @return {@code true} if this field's goal can be reached from {@code (x,y)}
+	 */
+	public boolean isReachable(int x, int y) {
+		
+		return getDistance(x, y) < DijkstraMap.FLOOR;
+	}
+	
+	/**
+	 * A diagonal step is only allowed if at least one of the cells beside it isn't
+	 * a wall -- just as with {@link DijkstraMap}.
+	 * 
+	 * @param from
+	 * @return the neighboring cell which is closest to this field's goal, or
+	 *         {@code null} if {@code from} is the goal, or the goal can't be
+	 *         reached from {@code from}
+	 */
+	public Coord getNextStep(Coord from) {
+		
+		final double here = getDistance(from.x, from.y);
+		if (here <= DijkstraMap.GOAL || here >= DijkstraMap.FLOOR)
+			return null;
+		
+		Coord best = null;
+		double bestDistance = here;
+		for (int i = 0; i < directions.length; i++) {
+			final int dx = directions[i].deltaX, dy = directions[i].deltaY;
+			if (dx != 0 && dy != 0 && getDistance(from.x + dx, from.y) >= DijkstraMap.WALL
+					&& getDistance(from.x, from.y + dy) >= DijkstraMap.WALL)
+				continue;
+			
+			final int x = from.x + dx, y = from.y + dy;
+			final double distance = getDistance(x, y);
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = Coord.get(x, y);
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Follow this field from {@code from} toward its goal, for at most
+	 * {@code length} steps.
+	 * 
+	 * @param from
+	 * @param length
+	 * @return the steps taken (not including {@code from}) -- empty if
+	 *         {@code from} is the goal, or the goal can't be reached from
+	 *         {@code from}
+	 */
+	public List<Coord> getPath(Coord from, int length) {
+		
+		final List<Coord> path = new ArrayList<>(Math.max(0, length));
+		
+		Coord current = from;
+		while (path.size() < length) {
+			current = getNextStep(current);
+			if (current == null)
+				break;
+			path.add(current);
+		}
+		
+		return path;
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.map;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.snowjak.hivemind.RNG;
+import org.snowjak.hivemind.config.Config;
+import org.snowjak.hivemind.util.cache.LRUMappedCache;
+
+import squidpony.squidgrid.Measurement;
+import squidpony.squidmath.Coord;
+
+/**
+ * Holds the most-recently-used {@link FlowField}s, keyed by their goal and the
+ * {@link PathfindingGrid#getVersion() version} of the grid they were scanned
+ * across. However many Entities ask for the same goal on the same grid, only
+ * the first pays for the scan.
+ * <p>
+ * Because grid-versions are never re-used, a FlowField is never handed out
+ * for a grid whose costs have changed since it was scanned.
+ * </p>
+ * <p>
+ * Scans run outside of the cache's lock, so a long scan doesn't hold up other
+ * lookups. Anyone asking for a field that's already being scanned waits for
+ * that scan, rather than starting another.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class FlowFieldCache {
+	
+	public static final String PREFERENCE_FLOW_FIELDS = "pathfinding.flow-fields";
+	static {
+		Config.get().register(PREFERENCE_FLOW_FIELDS, "Number of flow-fields to keep for re-use", 16, false, true);
+	}
+	
+	private static FlowFieldCache __INSTANCE = null;
+	
+	/**
+	 * @return the singleton {@link FlowFieldCache} instance
+	 */
+	public static FlowFieldCache get() {
+		
+		if (__INSTANCE == null)
+			synchronized (FlowFieldCache.class) {
+				if (__INSTANCE == null)
+					__INSTANCE = new FlowFieldCache();
+			}
+		return __INSTANCE;
+	}
+	
+	private final LRUMappedCache<Key, FlowField> cache;
+	private final Map<Key, CompletableFuture<FlowField>> scanning = new HashMap<>();
+	
+	private final ThreadLocal<IncrementalDijkstraMap> scanners = ThreadLocal
+			.withInitial(() -> new IncrementalDijkstraMap(Measurement.EUCLIDEAN, RNG.get()));
+	
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+	
+	private FlowFieldCache() {
+		
+		cache = new LRUMappedCache<>(Math.max(1, Config.get().getInt(PREFERENCE_FLOW_FIELDS)), (k, f) -> {
+		}, (k) -> null, (k) -> null);
+	}
+	
+	/**
+	 * Get the {@link FlowField} toward the given goal across the given grid,
+	 * scanning it if it isn't already cached.
+	 * 
+	 * @param grid
+	 * @param goal
+	 * @return
+	 */
+	public FlowField get(PathfindingGrid grid, Coord goal) {
+		
+		final Key key = new Key(grid.getVersion(), goal);
+		
+		final CompletableFuture<FlowField> pending;
+		final boolean scanHere;
+		synchronized (scanning) {
+			final FlowField cached = cache.getIfPresent(key);
+			if (cached != null) {
+				hits.incrementAndGet();
+				return cached;
+			}
+			
+			final CompletableFuture<FlowField> inFlight = scanning.get(key);
+			if (inFlight != null) {
+				hits.incrementAndGet();
+				pending = inFlight;
+				scanHere = false;
+			} else {
+				misses.incrementAndGet();
+				pending = new CompletableFuture<>();
+				scanning.put(key, pending);
+				scanHere = true;
+			}
+		}
+		
+		//
+		// Somebody else is already scanning this field.
+		if (!scanHere)
+			return pending.join();
+		
+		try {
+			final FlowField field = scan(grid, goal);
+			cache.set(new Key(field.getGridVersion(), goal), field);
+			pending.complete(field);
+			return field;
+			
+		} catch (RuntimeException | Error e) {
+			pending.completeExceptionally(e);
+			throw e;
+			
+		} finally {
+			synchronized (scanning) {
+				scanning.remove(key);
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of {@link FlowField}s currently cached
+	 */
+	public int getSize() {
+		
+		return cache.size();
+	}
+	
+	/**
+	 * @return the number of requests answered from the cache (or from a scan
+	 *         already under way)
+	 */
+	public long getHits() {
+		
+		return hits.get();
+	}
+	
+	/**
+	 * @return the number of requests that required a new scan
+	 */
+	public long getMisses() {
+		
+		return misses.get();
+	}
+	
+	/**
+	 * Scan a new {@link FlowField} toward {@code goal}. Its version is read under
+	 * the same lock as its costs are copied, so the two always agree -- even if
+	 * that's a newer version than was asked for.
+	 * 
+	 * @param grid
+	 * @param goal
+	 * @return
+	 */
+	private FlowField scan(PathfindingGrid grid, Coord goal) {
+		
+		final IncrementalDijkstraMap scanner = scanners.get();
+		final long version;
+		
+		grid.getLock().lock();
+		try {
+			version = grid.getVersion();
+			scanner.copyCostsFrom(grid.getPathfinder());
+		} finally {
+			grid.getLock().unlock();
+		}
+		
+		scanner.clearGoals();
+		scanner.resetMap();
+		scanner.setGoal(goal);
+		scanner.scan(null);
+		
+		final FlowField field = new FlowField(goal, version, scanner);
+		scanner.clearGoals();
+		return field;
+	}
+	
+	/**
+	 * Identifies a {@link FlowField}. Grid-versions are unique across all grids,
+	 * so the grid itself needn't figure in a Key's identity.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class Key {
+		
+		private final long gridVersion;
+		private final Coord goal;
+		
+		public Key(long gridVersion, Coord goal) {
+			
+			this.gridVersion = gridVersion;
+			this.goal = goal;
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			return Objects.hash(gridVersion, goal);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return gridVersion == other.gridVersion && Objects.equals(goal, other.goal);
+		}
+	}
+}
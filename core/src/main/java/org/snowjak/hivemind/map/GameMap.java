@@ -3,13 +3,15 @@
  */
 package org.snowjak.hivemind.map;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
 import org.snowjak.hivemind.Materials;
 import org.snowjak.hivemind.Materials.Material;
 import org.snowjak.hivemind.TerrainTypes;
 import org.snowjak.hivemind.TerrainTypes.TerrainType;
-import org.snowjak.hivemind.util.ArrayUtil;
 import org.snowjak.hivemind.util.ExtGreasedRegion;
-import org.snowjak.hivemind.util.cache.ColorCache;
 
 import com.badlogic.gdx.graphics.Color;
 
@@ -21,8 +23,44 @@ import squidpony.squidmath.GreasedRegion;
  * (e.g., in the case of the "global"/"master" instance) or partial (in the case
  * of an individual's "known" instance).
  * <p>
- * Note that GameMap is written to be thread-safe, with all appropriate methods
- * {@code synchronized}.
+ * Note that GameMap is written to be thread-safe. It is guarded by a
+ * {@link StampedLock}: single-cell reads (e.g., {@link #getTerrainIndex(int, int)})
+ * are optimistic, and only fall back to taking the read-lock if a write
+ * happened concurrently. If you need to read many cells at once, prefer the
+ * bulk-read methods ({@link #readRegion(GreasedRegion, CellConsumer)},
+ * {@link #copyTerrainInto(short[])}, etc.), which take the lock only once.
+ * </p>
+ * <p>
+ * The map is stored as a grid of {@value #CHUNK_SIZE}x{@value #CHUNK_SIZE}
+ * chunks. Within a chunk, each map-layer is a "flattened" primitive array, laid
+ * out in the same order as SquidLib's {@code [x][y]} arrays: local cell
+ * {@code (x,y)} lives at index {@code x * CHUNK_SIZE + y}. Because a chunk is
+ * exactly 64 cells high, each of a chunk's columns lines up with a single
+ * {@link GreasedRegion} bit-word -- which lets us copy between maps within a
+ * region a word (and a run of cells) at a time. For those APIs that still need
+ * full-size 2D arrays, we keep lazily-rebuilt 2D views (see
+ * {@link #getSquidCharMap()}, {@link #getVisibilityResistance()}).
+ * </p>
+ * <p>
+ * Each chunk's contents are kept apart from this map's "known" region. A cell
+ * which is not known always reads as empty, whatever its chunk may hold. Both
+ * are allocated lazily: a chunk which holds nothing (i.e., which is entirely
+ * unknown) costs nothing but a {@code null} reference, and is released again
+ * whenever it is {@link #clear(ExtGreasedRegion) cleared} back to empty.
+ * </p>
+ * <p>
+ * Chunk-contents are copy-on-write. {@link #snapshot()} shares every chunk with
+ * the new (read-only) GameMap, and the original only copies a chunk when it
+ * next writes to it. Every change to the map bumps its {@link #getVersion()
+ * version}, which snapshots carry with them -- so caches can cheaply tell
+ * whether anything changed.
+ * </p>
+ * <p>
+ * {@link #insert(GameMap, ExtGreasedRegion) Inserting} from a snapshot shares
+ * the snapshot's chunks wherever possible, too. So an individual's map, which
+ * is built up from snapshots of the world-map, only holds its own copy of
+ * those chunks where its memory has actually diverged from the world; the rest
+ * of it is just its "known" region over the world's chunks.
  * </p>
  * 
  * @author snowjak88
@@ -30,12 +68,35 @@ import squidpony.squidmath.GreasedRegion;
  */
 public class GameMap {
 	
-	private int width = 1, height = 1;
-	private short[][] terrain = new short[0][0], material = new short[1][1];
-	private ExtGreasedRegion known = new ExtGreasedRegion(1, 1);
+	/**
+	 * Chunks are {@code CHUNK_SIZE} cells on a side.
+	 */
+	public static final int CHUNK_SIZE = 64;
+	private static final int CHUNK_SHIFT = 6, CHUNK_MASK = CHUNK_SIZE - 1, CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+	
+	/**
+	 * Supplies copy-on-write epochs. A {@link Chunk} (or {@link ChunkKnown}) whose
+	 * epoch matches its GameMap's current epoch is owned outright by that GameMap;
+	 * otherwise, it may be shared, and must be copied before it is written.
+	 */
+	private static final AtomicLong EPOCHS = new AtomicLong();
+	
+	private final StampedLock lock = new StampedLock();
+	private final boolean readOnly;
 	
-	private double[][] visibility = new double[1][1];
-	private char[][] squidCharMap = null, charMap = null;
+	private long epoch = EPOCHS.incrementAndGet();
+	private volatile long version = 0;
+	
+	private int width = 0, height = 0;
+	private int chunksWide = 0, chunksHigh = 0;
+	private Chunk[] chunks = new Chunk[0];
+	private ChunkKnown[] known = new ChunkKnown[0];
+	private long[] chunkVersions = new long[0];
+	
+	private char[][] squidCharMap = null;
+	private double[][] visibilityView = null;
+	private ExtGreasedRegion knownView = null;
+	private boolean squidCharMapDirty = true, visibilityViewDirty = true, knownViewDirty = true;
 	
 	/**
 	 * Construct a new (empty) GameMap of the given size.
@@ -45,28 +106,45 @@ public class GameMap {
 	 */
 	public GameMap(int width, int height) {
 		
+		this.readOnly = false;
 		resize(width, height);
 	}
 	
 	/**
 	 * Construct a new GameMap, making an exact copy of an existing GameMap.
 	 * <p>
-	 * Note that this constructor will synchronize on {@code toCopy}.
+	 * This is cheap -- the two GameMaps share their chunks until either of them
+	 * writes to one. Note that this constructor will briefly take
+	 * {@code toCopy}'s write-lock.
 	 * </p>
 	 * 
 	 * @param toCopy
 	 */
 	public GameMap(GameMap toCopy) {
 		
-		synchronized (toCopy) {
+		this(toCopy, false);
+	}
+	
+	private GameMap(GameMap toCopy, boolean readOnly) {
+		
+		this.readOnly = readOnly;
+		
+		final long stamp = toCopy.lock.writeLock();
+		try {
+			//
+			// From here on, every chunk we share is copy-on-write for both of us.
+			toCopy.epoch = EPOCHS.incrementAndGet();
+			
 			this.width = toCopy.width;
 			this.height = toCopy.height;
-			this.terrain = ArrayUtil.copy(toCopy.terrain);
-			this.material = ArrayUtil.copy(toCopy.material);
-			this.visibility = ArrayUtil.copy(toCopy.visibility);
-			this.known.remake(toCopy.known);
-			this.charMap = null;
-			this.squidCharMap = null;
+			this.chunksWide = toCopy.chunksWide;
+			this.chunksHigh = toCopy.chunksHigh;
+			this.chunks = toCopy.chunks.clone();
+			this.known = toCopy.known.clone();
+			this.chunkVersions = toCopy.chunkVersions.clone();
+			this.version = toCopy.version;
+		} finally {
+			toCopy.lock.unlockWrite(stamp);
 		}
 	}
 	
@@ -76,16 +154,12 @@ public class GameMap {
 	 * 
 	 * @param toCopy
 	 * @param onlyWithin
+	 * @see #insert(GameMap, ExtGreasedRegion)
 	 */
 	public GameMap(GameMap toCopy, ExtGreasedRegion onlyWithin) {
 		
-		synchronized (toCopy) {
-			resize(toCopy.width, toCopy.height);
-			
-			this.visibility = onlyWithin.inverseMask(toCopy.visibility, 0);
-			
-			this.insert(toCopy, onlyWithin);
-		}
+		this.readOnly = false;
+		this.insert(toCopy, onlyWithin);
 	}
 	
 	/**
@@ -104,6 +178,7 @@ public class GameMap {
 	 */
 	public GameMap(char[][] chars, Material[][] materials, boolean useSquidMappings) {
 		
+		this.readOnly = false;
 		resize(chars.length, chars[0].length);
 		
 		for (int i = 0; i < chars.length; i++) {
@@ -118,7 +193,6 @@ public class GameMap {
 				set(i, j, TerrainTypes.get().getIndexOf(tt), Materials.get().getIndex(materials[i][j]));
 			}
 		}
-		this.known.refill(terrain, 0, Short.MAX_VALUE);
 	}
 	
 	/**
@@ -137,6 +211,8 @@ public class GameMap {
 	 */
 	public GameMap(char[][] chars, Material[][] materials, GreasedRegion known, boolean useSquidMappings) {
 		
+		this.readOnly = false;
+		
 		if (chars.length != known.width || chars[0].length != known.height)
 			throw new IllegalArgumentException("Cannot create a new GameMap -- given map-elements do not match sizes.");
 		
@@ -158,7 +234,135 @@ public class GameMap {
 			}
 		}
 		
-		this.known = new ExtGreasedRegion(known);
+		//
+		// Take the given "known" region as-is.
+		for (int x = 0; x < width; x++)
+			for (int cy = 0; cy < chunksHigh; cy++) {
+				final long bits = known.data[x * chunksHigh + cy];
+				final int ci = chunkIndex(x, cy << CHUNK_SHIFT);
+				if (bits != 0L || this.known[ci] != null)
+					writableKnown(ci).words[x & CHUNK_MASK] = bits;
+			}
+		markViewsDirty();
+	}
+	
+	/**
+	 * Get a read-only snapshot of this GameMap as it stands right now.
+	 * <p>
+	 * This is cheap: the snapshot shares this map's chunks, and this map will copy
+	 * a chunk only when it next writes to it. Snapshots are safe to hand off to
+	 * tasks running on the {@link org.snowjak.hivemind.concurrent.Executor
+	 * Executor}, which may then read a consistent frame without contending with
+	 * the engine-thread.
+	 * </p>
+	 * <p>
+	 * Attempting to modify the returned GameMap will result in an
+	 * {@link UnsupportedOperationException}.
+	 * </p>
+	 * 
+	 * @return
+	 * @see #getVersion()
+	 */
+	public GameMap snapshot() {
+		
+		if (readOnly)
+			return this;
+		
+		return new GameMap(this, true);
+	}
+	
+	/**
+	 * @return {@code true} if this GameMap is a {@link #snapshot() snapshot}, and
+	 *         so cannot be modified
+	 */
+	public boolean isReadOnly() {
+		
+		return readOnly;
+	}
+	
+	/**
+	 * Get this map's version. This increases every time the map's contents
+	 * change, and is carried by any {@link #snapshot() snapshot} taken of this
+	 * map.
+	 * 
+	 * @return
+	 */
+	public long getVersion() {
+		
+		return version;
+	}
+	
+	/**
+	 * Get the {@link #getVersion() version} at which the chunk containing the
+	 * given location was last changed (including being allocated or released), or
+	 * {@code -1} if the location is outside the map.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public long getVersion(int x, int y) {
+		
+		final long stamp = lock.readLock();
+		try {
+			if (!isInMapUnlocked(x, y))
+				return -1;
+			return chunkVersions[chunkIndex(x, y)];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Add to {@code into} every cell of every chunk that has changed since the
+	 * given {@link #getVersion() version}. This is coarse -- an entire chunk is
+	 * added even if only one of its cells changed -- but lets a cache keep up with
+	 * this map at a cost proportional to how much of it has changed.
+	 * 
+	 * @param sinceVersion
+	 * @param into
+	 * @throws IllegalArgumentException
+	 *             if {@code into} is not the same size as this map
+	 */
+	public void addChangedSince(long sinceVersion, GreasedRegion into) {
+		
+		final long stamp = lock.readLock();
+		try {
+			checkRegionSize(into);
+			
+			for (int cx = 0; cx < chunksWide; cx++)
+				for (int cy = 0; cy < chunksHigh; cy++)
+					if (chunkVersions[cx * chunksHigh + cy] > sinceVersion) {
+						final int x = cx << CHUNK_SHIFT, y = cy << CHUNK_SHIFT;
+						into.insertRectangle(x, y, Math.min(CHUNK_SIZE, width - x), Math.min(CHUNK_SIZE, height - y));
+					}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Count the chunks for which this map is holding its own copy -- i.e., those
+	 * which it does not share with any other GameMap.
+	 * <p>
+	 * Useful for keeping an eye on memory-usage. Each such chunk costs a little
+	 * over {@value #CHUNK_SIZE}x{@value #CHUNK_SIZE}x8 bytes.
+	 * </p>
+	 * 
+	 * @return
+	 */
+	public int getOwnedChunkCount() {
+		
+		final long stamp = lock.readLock();
+		try {
+			int count = 0;
+			for (int i = 0; i < chunks.length; i++)
+				if (chunks[i] != null && chunks[i].epoch == epoch)
+					count++;
+			return count;
+		} finally {
+			lock.unlockRead(stamp);
+		}
 	}
 	
 	/**
@@ -177,34 +381,59 @@ public class GameMap {
 	 */
 	public void resize(int width, int height) {
 		
-		synchronized (this) {
-			if (this.width == width && this.height == height)
-				return;
-			
-			this.width = width;
-			this.height = height;
-			
-			terrain = new short[width][height];
-			material = new short[width][height];
-			
-			ArrayUtil.fill(terrain, (short) -1);
-			ArrayUtil.fill(material, (short) -1);
-			
-			known.resizeAndEmpty(width, height);
-			
-			this.visibility = new double[width][height];
-			
-			squidCharMap = null;
-			charMap = null;
+		checkWritable();
+		
+		final long stamp = lock.writeLock();
+		try {
+			resizeUnlocked(width, height);
+		} finally {
+			lock.unlockWrite(stamp);
 		}
 	}
 	
+	/**
+	 * Implements {@link #resize(int, int)}. Assumes that the caller already holds
+	 * the write-lock.
+	 * 
+	 * @param width
+	 * @param height
+	 */
+	private void resizeUnlocked(int width, int height) {
+		
+		if (this.width == width && this.height == height)
+			return;
+		
+		this.width = width;
+		this.height = height;
+		this.chunksWide = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+		this.chunksHigh = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+		
+		this.chunks = new Chunk[chunksWide * chunksHigh];
+		this.known = new ChunkKnown[chunks.length];
+		this.chunkVersions = new long[chunks.length];
+		Arrays.fill(chunkVersions, ++this.version);
+		
+		squidCharMap = null;
+		visibilityView = null;
+		knownView = null;
+		markViewsDirty();
+	}
+	
 	/**
 	 * Insert the contents of the given GameMap into this GameMap, but only within
-	 * {@code insertOnly}.
+	 * {@code insertOnly}. Every cell within {@code insertOnly} becomes known to
+	 * this GameMap (even if {@code insertFrom} doesn't know it).
+	 * <p>
+	 * If {@code insertFrom} is a {@link #snapshot() snapshot}, then this GameMap
+	 * will share its chunks wherever it can -- i.e., wherever this GameMap either
+	 * already shares that chunk, or doesn't know anything about it outside of
+	 * {@code insertOnly}. Only where its memory diverges from
+	 * {@code insertFrom}'s will this GameMap make its own copy of a chunk.
+	 * </p>
 	 * <p>
-	 * Note that this method not only synchronizes on this GameMap, but
-	 * <em>also</em> on {@code insertFrom}. Be wary lest you introduce deadlocks!
+	 * Note that this method not only takes this GameMap's write-lock, but
+	 * <em>also</em> {@code insertFrom}'s read-lock. Be wary lest you introduce
+	 * deadlocks!
 	 * </p>
 	 * <p>
 	 * Note that, if {@code insertFrom} is not the same size as this GameMap, then
@@ -214,23 +443,92 @@ public class GameMap {
 	 * 
 	 * @param insertFrom
 	 * @param insertOnly
+	 * @throws IllegalArgumentException
+	 *             if {@code insertOnly} is not the same size as
+	 *             {@code insertFrom}
 	 */
 	public void insert(GameMap insertFrom, ExtGreasedRegion insertOnly) {
 		
-		synchronized (this) {
-			synchronized (insertFrom) {
+		checkWritable();
+		
+		if (insertFrom == this)
+			return;
+		
+		final long writeStamp = lock.writeLock();
+		try {
+			final long readStamp = insertFrom.lock.readLock();
+			try {
 				if (this.width != insertFrom.width || this.height != insertFrom.height)
-					resize(insertFrom.width, insertFrom.height);
+					resizeUnlocked(insertFrom.width, insertFrom.height);
 				
-				this.terrain = insertOnly.inverseMask(this.terrain, insertFrom.terrain);
-				this.material = insertOnly.inverseMask(this.material, insertFrom.material);
-				this.visibility = insertOnly.inverseMask(this.visibility, insertFrom.visibility);
+				checkRegionSize(insertOnly);
 				
-				this.known.or(insertOnly);
+				final long version = ++this.version;
+				for (int cx = 0; cx < chunksWide; cx++)
+					for (int cy = 0; cy < chunksHigh; cy++) {
+						final int ci = cx * chunksHigh + cy;
+						final int x0 = cx << CHUNK_SHIFT, columns = Math.min(CHUNK_SIZE, width - x0);
+						
+						//
+						// Can we get away with sharing the other map's chunk, rather than
+						// copying into our own?
+						final Chunk from = insertFrom.chunks[ci];
+						final ChunkKnown fromKnown = insertFrom.known[ci];
+						final ChunkKnown myKnown = known[ci];
+						final Chunk mine = chunks[ci];
+						
+						boolean anyInserted = false, fromKnowsAll = true, nothingElseKnown = true;
+						for (int lx = 0; lx < columns; lx++) {
+							final long bits = insertOnly.data[(x0 + lx) * chunksHigh + cy];
+							if (bits == 0L)
+								continue;
+							anyInserted = true;
+							if (fromKnown == null || (bits & ~fromKnown.words[lx]) != 0L)
+								fromKnowsAll = false;
+						}
+						if (!anyInserted)
+							continue;
+						
+						if (myKnown != null)
+							for (int lx = 0; lx < columns; lx++)
+								if ((myKnown.words[lx] & ~insertOnly.data[(x0 + lx) * chunksHigh + cy]) != 0L) {
+									nothingElseKnown = false;
+									break;
+								}
+						
+						final boolean share = insertFrom.readOnly && fromKnowsAll && (nothingElseKnown || mine == from);
+						
+						if (share)
+							chunks[ci] = from;
+						else {
+							final Chunk to = writableChunk(ci);
+							for (int lx = 0; lx < columns; lx++) {
+								final long bits = insertOnly.data[(x0 + lx) * chunksHigh + cy];
+								if (bits == 0L)
+									continue;
+								
+								final long copyBits = (fromKnown == null || from == null) ? 0L
+										: bits & fromKnown.words[lx];
+								if (copyBits != 0L)
+									Chunk.copyColumn(from, to, lx, copyBits);
+								if ((bits & ~copyBits) != 0L)
+									to.fillColumn(lx, bits & ~copyBits);
+							}
+						}
+						
+						final ChunkKnown toKnown = writableKnown(ci);
+						for (int lx = 0; lx < columns; lx++)
+							toKnown.words[lx] |= insertOnly.data[(x0 + lx) * chunksHigh + cy];
+						
+						chunkVersions[ci] = version;
+					}
 				
-				squidCharMap = null;
-				charMap = null;
+				markViewsDirty();
+			} finally {
+				insertFrom.lock.unlockRead(readStamp);
 			}
+		} finally {
+			lock.unlockWrite(writeStamp);
 		}
 	}
 	
@@ -287,22 +585,60 @@ public class GameMap {
 	 */
 	public void set(int x, int y, short terrainType, short material) {
 		
-		synchronized (this) {
-			if (!isInMap(x, y))
+		checkWritable();
+		
+		final long stamp = lock.writeLock();
+		try {
+			if (!isInMapUnlocked(x, y))
+				return;
+			
+			final int ci = chunkIndex(x, y), i = cellIndex(x, y);
+			final int lx = x & CHUNK_MASK;
+			final long bit = 1L << (y & CHUNK_MASK);
+			
+			final boolean oldKnown = isKnownUnlocked(x, y);
+			final short oldTerrain = (oldKnown && chunks[ci] != null) ? chunks[ci].terrain[i] : -1;
+			final short oldMaterial = (oldKnown && chunks[ci] != null) ? chunks[ci].material[i] : -1;
+			
+			final short newTerrain = (terrainType >= 0) ? terrainType : oldTerrain;
+			final short newMaterial = (material >= 0) ? material : oldMaterial;
+			final boolean newKnown = (newTerrain >= 0);
+			
+			//
+			// Don't bump our version (or allocate/copy a chunk) if nothing changes.
+			if (newTerrain == oldTerrain && newMaterial == oldMaterial && newKnown == oldKnown)
 				return;
 			
-			if (terrainType >= 0)
-				this.terrain[x][y] = terrainType;
-			if (material >= 0)
-				this.material[x][y] = material;
+			final Chunk chunk = writableChunk(ci);
+			chunk.terrain[i] = newTerrain;
+			chunk.material[i] = newMaterial;
+			
+			final TerrainType tt = TerrainTypes.get().getAt(newTerrain);
+			final Material mat = Materials.get().get(newMaterial);
+			
+			chunk.visibility[i] = (tt == null || mat == null) ? 0f
+					: (float) (tt.getVisibilityResistance() * mat.getVisibilityResistance());
+			
+			if (newKnown != oldKnown) {
+				final ChunkKnown chunkKnown = writableKnown(ci);
+				if (newKnown)
+					chunkKnown.words[lx] |= bit;
+				else
+					chunkKnown.words[lx] &= ~bit;
+			}
+			
+			chunkVersions[ci] = ++this.version;
 			
-			this.known.set((this.terrain[x][y] >= 0), x, y);
-			visibility[x][y] = TerrainTypes.get().getAt(this.terrain[x][y]).getVisibilityResistance()
-					* Materials.get().get(this.material[x][y]).getVisibilityResistance();
-			getSquidCharMap()[x][y] = (terrainType >= 0 && isKnown(x, y))
-					? TerrainTypes.get().getAt(terrainType).getSquidChar()
-					: ' ';
-			charMap = null;
+			//
+			// Keep our 2D views current, rather than forcing a full rebuild.
+			if (squidCharMap != null && !squidCharMapDirty)
+				squidCharMap[x][y] = (tt != null && newKnown) ? tt.getSquidChar() : ' ';
+			if (visibilityView != null && !visibilityViewDirty)
+				visibilityView[x][y] = (newKnown) ? chunk.visibility[i] : 0d;
+			if (knownView != null && !knownViewDirty)
+				knownView.set(newKnown, x, y);
+		} finally {
+			lock.unlockWrite(stamp);
 		}
 	}
 	
@@ -310,28 +646,60 @@ public class GameMap {
 	 * Compile a {@code char[][]} consisting of every map-cell's
 	 * {@link TerrainType#getSquidChar()}, or {@code ' '} (space) wherever the cell
 	 * is unknown.
+	 * <p>
+	 * This is a view onto this map, maintained by this map -- do not modify it!
+	 * </p>
 	 * 
 	 * @return
 	 */
 	public char[][] getSquidCharMap() {
 		
-		synchronized (this) {
-			if (squidCharMap == null) {
+		final long optimisticStamp = lock.tryOptimisticRead();
+		final char[][] currentView = squidCharMap;
+		if (currentView != null && !squidCharMapDirty && lock.validate(optimisticStamp))
+			return currentView;
+		
+		final long stamp = lock.writeLock();
+		try {
+			if (squidCharMap == null)
 				squidCharMap = new char[width][height];
-				for (int i = 0; i < width; i++)
-					for (int j = 0; j < height; j++) {
-						final TerrainType tt = getTerrain(i, j);
-						squidCharMap[i][j] = (tt != null && isKnown(i, j)) ? tt.getSquidChar() : ' ';
+			
+			if (squidCharMapDirty) {
+				for (int x = 0; x < width; x++) {
+					final char[] column = squidCharMap[x];
+					for (int y = 0; y < height; y++) {
+						final TerrainType tt = TerrainTypes.get().getAt(getTerrainIndexUnlocked(x, y));
+						column[y] = (tt != null) ? tt.getSquidChar() : ' ';
 					}
+				}
+				squidCharMapDirty = false;
 			}
+			
 			return squidCharMap;
+		} finally {
+			lock.unlockWrite(stamp);
 		}
 	}
 	
+	/**
+	 * Compile a {@code short[][]} consisting of every map-cell's {@link Material}
+	 * index (or {@code -1} where no Material is assigned).
+	 * <p>
+	 * This is a freshly-allocated copy, and may be modified freely.
+	 * </p>
+	 * 
+	 * @return
+	 */
 	public short[][] getMaterialIndexMap() {
 		
-		synchronized (this) {
-			return material;
+		final long stamp = lock.readLock();
+		try {
+			final short[][] result = new short[width][height];
+			for (int x = 0; x < width; x++)
+				copyColumnInto(result[x], 0, x, false);
+			return result;
+		} finally {
+			lock.unlockRead(stamp);
 		}
 	}
 	
@@ -339,13 +707,38 @@ public class GameMap {
 	 * Compile a {@code double[][]} representing the visibility-resistance of the
 	 * Map (being the product of the terrain-type and material
 	 * visibility-resistances).
+	 * <p>
+	 * This is a view onto this map, maintained by this map -- do not modify it!
+	 * </p>
 	 * 
 	 * @return
 	 */
 	public double[][] getVisibilityResistance() {
 		
-		synchronized (this) {
-			return visibility;
+		final long optimisticStamp = lock.tryOptimisticRead();
+		final double[][] currentView = visibilityView;
+		if (currentView != null && !visibilityViewDirty && lock.validate(optimisticStamp))
+			return currentView;
+		
+		final long stamp = lock.writeLock();
+		try {
+			if (visibilityView == null)
+				visibilityView = new double[width][height];
+			
+			if (visibilityViewDirty) {
+				for (int x = 0; x < width; x++) {
+					final double[] column = visibilityView[x];
+					for (int y = 0; y < height; y++) {
+						final Chunk chunk = chunks[chunkIndex(x, y)];
+						column[y] = (chunk == null || !isKnownUnlocked(x, y)) ? 0d : chunk.visibility[cellIndex(x, y)];
+					}
+				}
+				visibilityViewDirty = false;
+			}
+			
+			return visibilityView;
+		} finally {
+			lock.unlockWrite(stamp);
 		}
 	}
 	
@@ -396,13 +789,32 @@ public class GameMap {
 	 */
 	public short getTerrainIndex(int x, int y) {
 		
-		synchronized (this) {
-			if (!isInMap(x, y))
-				return -1;
-			return terrain[x][y];
+		final long optimisticStamp = lock.tryOptimisticRead();
+		if (optimisticStamp != 0L)
+			try {
+				final short result = getTerrainIndexUnlocked(x, y);
+				if (lock.validate(optimisticStamp))
+					return result;
+			} catch (ArrayIndexOutOfBoundsException e) {
+				// A concurrent resize -- fall back to the read-lock.
+			}
+		
+		final long stamp = lock.readLock();
+		try {
+			return getTerrainIndexUnlocked(x, y);
+		} finally {
+			lock.unlockRead(stamp);
 		}
 	}
 	
+	private short getTerrainIndexUnlocked(int x, int y) {
+		
+		if (!isKnownUnlocked(x, y))
+			return -1;
+		final Chunk chunk = chunks[chunkIndex(x, y)];
+		return (chunk == null) ? -1 : chunk.terrain[cellIndex(x, y)];
+	}
+	
 	/**
 	 * Get the active {@link Material} at the given location, or {@code null} if
 	 * there is no assigned Material or the location is outside the map.
@@ -450,13 +862,32 @@ public class GameMap {
 	 */
 	public short getMaterialIndex(int x, int y) {
 		
-		synchronized (this) {
-			if (!isInMap(x, y))
-				return -1;
-			return material[x][y];
+		final long optimisticStamp = lock.tryOptimisticRead();
+		if (optimisticStamp != 0L)
+			try {
+				final short result = getMaterialIndexUnlocked(x, y);
+				if (lock.validate(optimisticStamp))
+					return result;
+			} catch (ArrayIndexOutOfBoundsException e) {
+				// A concurrent resize -- fall back to the read-lock.
+			}
+		
+		final long stamp = lock.readLock();
+		try {
+			return getMaterialIndexUnlocked(x, y);
+		} finally {
+			lock.unlockRead(stamp);
 		}
 	}
 	
+	private short getMaterialIndexUnlocked(int x, int y) {
+		
+		if (!isKnownUnlocked(x, y))
+			return -1;
+		final Chunk chunk = chunks[chunkIndex(x, y)];
+		return (chunk == null) ? -1 : chunk.material[cellIndex(x, y)];
+	}
+	
 	/**
 	 * Get the character at the given location, or {@code 0} if the given location
 	 * is either unknown or outside the map.
@@ -481,12 +912,10 @@ public class GameMap {
 	 */
 	public char getChar(int x, int y) {
 		
-		synchronized (this) {
-			final TerrainType tt = getTerrain(x, y);
-			if (tt == null)
-				return 0;
-			return tt.getCh();
-		}
+		final TerrainType tt = getTerrain(x, y);
+		if (tt == null)
+			return 0;
+		return tt.getCh();
 	}
 	
 	/**
@@ -513,14 +942,11 @@ public class GameMap {
 	 */
 	public Color getForeground(int x, int y) {
 		
-		synchronized (this) {
-			
-			final TerrainType tt = getTerrain(x, y);
-			if (tt == null)
-				return null;
-			
-			return tt.getForeground();
-		}
+		final TerrainType tt = getTerrain(x, y);
+		if (tt == null)
+			return null;
+		
+		return tt.getForeground();
 	}
 	
 	/**
@@ -547,13 +973,11 @@ public class GameMap {
 	 */
 	public Color getBackground(int x, int y) {
 		
-		synchronized (this) {
-			final Material mat = getMaterial(x, y);
-			if (mat == null)
-				return null;
-			
-			return mat.getColor();
-		}
+		final Material mat = getMaterial(x, y);
+		if (mat == null)
+			return null;
+		
+		return mat.getColor();
 	}
 	
 	/**
@@ -578,19 +1002,62 @@ public class GameMap {
 	 */
 	public boolean isKnown(int x, int y) {
 		
-		synchronized (this) {
-			return known.contains(x, y);
+		final long optimisticStamp = lock.tryOptimisticRead();
+		if (optimisticStamp != 0L)
+			try {
+				final boolean result = isKnownUnlocked(x, y);
+				if (lock.validate(optimisticStamp))
+					return result;
+			} catch (ArrayIndexOutOfBoundsException e) {
+				// A concurrent resize -- fall back to the read-lock.
+			}
+		
+		final long stamp = lock.readLock();
+		try {
+			return isKnownUnlocked(x, y);
+		} finally {
+			lock.unlockRead(stamp);
 		}
 	}
 	
+	private boolean isKnownUnlocked(int x, int y) {
+		
+		if (!isInMapUnlocked(x, y))
+			return false;
+		final ChunkKnown chunkKnown = known[chunkIndex(x, y)];
+		return (chunkKnown != null) && (chunkKnown.words[x & CHUNK_MASK] & (1L << (y & CHUNK_MASK))) != 0L;
+	}
+	
 	/**
-	 * Get the "known" region underlying this map.
+	 * Get the "known" region of this map.
+	 * <p>
+	 * This is a view onto this map, maintained by this map -- do not modify it!
+	 * For a copy, use {@link #copyKnownInto(GreasedRegion)}.
+	 * </p>
 	 * 
 	 * @return
 	 */
 	public ExtGreasedRegion getKnown() {
 		
-		return known;
+		final long optimisticStamp = lock.tryOptimisticRead();
+		final ExtGreasedRegion currentView = knownView;
+		if (currentView != null && !knownViewDirty && lock.validate(optimisticStamp))
+			return currentView;
+		
+		final long stamp = lock.writeLock();
+		try {
+			if (knownView == null)
+				knownView = new ExtGreasedRegion(width, height);
+			
+			if (knownViewDirty) {
+				copyKnownIntoUnlocked(knownView);
+				knownViewDirty = false;
+			}
+			
+			return knownView;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
 	}
 	
 	/**
@@ -619,23 +1086,173 @@ public class GameMap {
 	 */
 	public boolean isInMap(int x, int y) {
 		
-		synchronized (this) {
-			return (x >= 0 && y >= 0 && x < width && y < height);
+		final long optimisticStamp = lock.tryOptimisticRead();
+		if (optimisticStamp != 0L) {
+			final boolean result = isInMapUnlocked(x, y);
+			if (lock.validate(optimisticStamp))
+				return result;
+		}
+		
+		final long stamp = lock.readLock();
+		try {
+			return isInMapUnlocked(x, y);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	private boolean isInMapUnlocked(int x, int y) {
+		
+		return (x >= 0 && y >= 0 && x < width && y < height);
+	}
+	
+	/**
+	 * Read every cell of this map that lies within the given region, all under a
+	 * single read-lock. Cells of {@code region} that fall outside this map are
+	 * skipped.
+	 * <p>
+	 * {@code consumer} is called while this map's read-lock is held -- so it
+	 * should be quick, and must not try to modify this map!
+	 * </p>
+	 * 
+	 * @param region
+	 * @param consumer
+	 */
+	public void readRegion(GreasedRegion region, CellConsumer consumer) {
+		
+		final long stamp = lock.readLock();
+		try {
+			ExtGreasedRegion.forEachCell(region, (x, y) -> {
+				if (isInMapUnlocked(x, y))
+					consumer.accept(x, y, getTerrainIndexUnlocked(x, y), getMaterialIndexUnlocked(x, y));
+			});
+		} finally {
+			lock.unlockRead(stamp);
 		}
 	}
 	
+	/**
+	 * Copy this map's {@link TerrainType}-indices into the given flattened array
+	 * (where cell {@code (x,y)} is at index {@code x * height + y}), under a single
+	 * read-lock.
+	 * 
+	 * @param dest
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not {@code width * height} long
+	 */
+	public void copyTerrainInto(short[] dest) {
+		
+		final long stamp = lock.readLock();
+		try {
+			if (dest.length != width * height)
+				throw new IllegalArgumentException("Cannot copy terrain -- destination is not the same size as the map.");
+			for (int x = 0; x < width; x++)
+				copyColumnInto(dest, x * height, x, true);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Copy this map's {@link Material}-indices into the given flattened array
+	 * (where cell {@code (x,y)} is at index {@code x * height + y}), under a single
+	 * read-lock.
+	 * 
+	 * @param dest
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not {@code width * height} long
+	 */
+	public void copyMaterialInto(short[] dest) {
+		
+		final long stamp = lock.readLock();
+		try {
+			if (dest.length != width * height)
+				throw new IllegalArgumentException(
+						"Cannot copy materials -- destination is not the same size as the map.");
+			for (int x = 0; x < width; x++)
+				copyColumnInto(dest, x * height, x, false);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Copy column {@code x} of either the terrain- or material-layer into
+	 * {@code dest}, starting at {@code destOffset}. Unknown cells are written as
+	 * {@code -1}.
+	 * 
+	 * @param dest
+	 * @param destOffset
+	 * @param x
+	 * @param terrain
+	 */
+	private void copyColumnInto(short[] dest, int destOffset, int x, boolean terrain) {
+		
+		final int lx = x & CHUNK_MASK, offset = lx << CHUNK_SHIFT;
+		for (int cy = 0; cy < chunksHigh; cy++) {
+			final int y = cy << CHUNK_SHIFT, length = Math.min(CHUNK_SIZE, height - y);
+			final int ci = chunkIndex(x, y);
+			final Chunk chunk = chunks[ci];
+			final long knownBits = (known[ci] == null) ? 0L : known[ci].words[lx];
+			
+			if (chunk == null || knownBits == 0L) {
+				Arrays.fill(dest, destOffset + y, destOffset + y + length, (short) -1);
+				continue;
+			}
+			
+			System.arraycopy((terrain) ? chunk.terrain : chunk.material, offset, dest, destOffset + y, length);
+			
+			long unknownBits = ~knownBits;
+			if (length < CHUNK_SIZE)
+				unknownBits &= (1L << length) - 1L;
+			while (unknownBits != 0L) {
+				dest[destOffset + y + Long.numberOfTrailingZeros(unknownBits)] = -1;
+				unknownBits &= unknownBits - 1L;
+			}
+		}
+	}
+	
+	/**
+	 * Copy this map's "known" region into the given {@link GreasedRegion}, under
+	 * a single read-lock.
+	 * 
+	 * @param dest
+	 */
+	public void copyKnownInto(GreasedRegion dest) {
+		
+		final long stamp = lock.readLock();
+		try {
+			copyKnownIntoUnlocked(dest);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	private void copyKnownIntoUnlocked(GreasedRegion dest) {
+		
+		dest.resizeAndEmpty(width, height);
+		for (int x = 0; x < width; x++)
+			for (int cy = 0; cy < chunksHigh; cy++) {
+				final ChunkKnown chunkKnown = known[chunkIndex(x, cy << CHUNK_SHIFT)];
+				dest.data[x * chunksHigh + cy] = (chunkKnown == null) ? 0L : chunkKnown.words[x & CHUNK_MASK];
+			}
+	}
+	
 	/**
 	 * Clear this map -- i.e., erase its contents.
 	 */
 	public void clear() {
 		
-		synchronized (this) {
-			ArrayUtil.fill(terrain, (short) -1);
-			ArrayUtil.fill(material, (short) -1);
-			known.clear();
-			ArrayUtil.fill(visibility, 0d);
-			squidCharMap = null;
-			charMap = null;
+		checkWritable();
+		
+		final long stamp = lock.writeLock();
+		try {
+			Arrays.fill(chunks, null);
+			Arrays.fill(known, null);
+			Arrays.fill(chunkVersions, ++this.version);
+			markViewsDirty();
+		} finally {
+			lock.unlockWrite(stamp);
 		}
 	}
 	
@@ -643,16 +1260,51 @@ public class GameMap {
 	 * Erase this map, but only within the given {@link ExtGreasedRegion}.
 	 * 
 	 * @param onlyWithin
+	 * @throws IllegalArgumentException
+	 *             if {@code onlyWithin} is not the same size as this map
 	 */
 	public void clear(ExtGreasedRegion onlyWithin) {
 		
-		synchronized (this) {
-			terrain = onlyWithin.inverseMask(terrain, (short) -1);
-			material = onlyWithin.inverseMask(material, (short) -1);
-			known.andNot(onlyWithin);
-			visibility = onlyWithin.inverseMask(visibility, 0d);
-			squidCharMap = null;
-			charMap = null;
+		checkWritable();
+		
+		final long stamp = lock.writeLock();
+		try {
+			checkRegionSize(onlyWithin);
+			
+			final long version = ++this.version;
+			for (int cx = 0; cx < chunksWide; cx++)
+				for (int cy = 0; cy < chunksHigh; cy++) {
+					final int ci = cx * chunksHigh + cy;
+					if (known[ci] == null)
+						continue;
+					
+					//
+					// Cells that aren't known read as empty -- so we need only forget them.
+					ChunkKnown chunkKnown = null;
+					boolean anyKnown = false;
+					for (int lx = 0, x = cx << CHUNK_SHIFT; lx < CHUNK_SIZE && x < width; lx++, x++) {
+						final long bits = onlyWithin.data[x * chunksHigh + cy];
+						if (bits != 0L && (known[ci].words[lx] & bits) != 0L) {
+							if (chunkKnown == null)
+								chunkKnown = writableKnown(ci);
+							chunkKnown.words[lx] &= ~bits;
+						}
+						anyKnown |= (known[ci].words[lx] != 0L);
+					}
+					
+					if (chunkKnown == null)
+						continue;
+					
+					if (!anyKnown) {
+						chunks[ci] = null;
+						known[ci] = null;
+					}
+					chunkVersions[ci] = version;
+				}
+			
+			markViewsDirty();
+		} finally {
+			lock.unlockWrite(stamp);
 		}
 	}
 	
@@ -666,35 +1318,196 @@ public class GameMap {
 		return height;
 	}
 	
+	private int chunkIndex(int x, int y) {
+		
+		return (x >> CHUNK_SHIFT) * chunksHigh + (y >> CHUNK_SHIFT);
+	}
+	
+	private static int cellIndex(int x, int y) {
+		
+		return ((x & CHUNK_MASK) << CHUNK_SHIFT) | (y & CHUNK_MASK);
+	}
+	
 	/**
-	 * Given a 2D map of {@link Color} references, "compress" that to an array of
-	 * {@code short}s -- being indices into the {@link ColorCache}.
+	 * Get the chunk at the given index, ready to be written -- allocating it if
+	 * necessary, or copying it first if it might be shared with another GameMap.
+	 * Assumes that the caller already holds the write-lock.
 	 * 
-	 * @param colors
+	 * @param ci
 	 * @return
 	 */
-	public static short[][] compressColors(Color[][] colors) {
+	private Chunk writableChunk(int ci) {
 		
-		final short[][] result = new short[colors.length][colors[0].length];
-		for (int x = 0; x < colors.length; x++)
-			for (int y = 0; y < colors[x].length; y++)
-				result[x][y] = ColorCache.get().get(colors[x][y]);
-		return result;
+		Chunk chunk = chunks[ci];
+		if (chunk == null) {
+			chunk = new Chunk(epoch);
+			chunks[ci] = chunk;
+		} else if (chunk.epoch != epoch) {
+			chunk = new Chunk(chunk, epoch);
+			chunks[ci] = chunk;
+		}
+		return chunk;
 	}
 	
 	/**
-	 * Given a 2D map of {@link ColorCache#get(short) color-indices}, convert that
-	 * map into a 2D array of {@link Color} references.
+	 * As {@link #writableChunk(int)}, but for the chunk's "known" region.
 	 * 
-	 * @param colorIndices
+	 * @param ci
 	 * @return
 	 */
-	public static Color[][] uncompressColors(short[][] colorIndices) {
+	private ChunkKnown writableKnown(int ci) {
+		
+		ChunkKnown chunkKnown = known[ci];
+		if (chunkKnown == null) {
+			chunkKnown = new ChunkKnown(epoch);
+			known[ci] = chunkKnown;
+		} else if (chunkKnown.epoch != epoch) {
+			chunkKnown = new ChunkKnown(chunkKnown, epoch);
+			known[ci] = chunkKnown;
+		}
+		return chunkKnown;
+	}
+	
+	private void checkWritable() {
+		
+		if (readOnly)
+			throw new UnsupportedOperationException("Cannot modify a GameMap snapshot.");
+	}
+	
+	private void checkRegionSize(GreasedRegion region) {
+		
+		if (region.width != width || region.height != height)
+			throw new IllegalArgumentException("Given region (" + region.width + "x" + region.height
+					+ ") is not the same size as this map (" + width + "x" + height + ").");
+	}
+	
+	private void markViewsDirty() {
+		
+		squidCharMapDirty = true;
+		visibilityViewDirty = true;
+		knownViewDirty = true;
+	}
+	
+	/**
+	 * Receives the contents of a single map-cell.
+	 * 
+	 * @author snowjak88
+	 *
+	 * @see GameMap#readRegion(GreasedRegion, CellConsumer)
+	 */
+	@FunctionalInterface
+	public interface CellConsumer {
+		
+		public void accept(int x, int y, short terrainIndex, short materialIndex);
+	}
+	
+	/**
+	 * The contents of a {@value GameMap#CHUNK_SIZE}x{@value GameMap#CHUNK_SIZE}
+	 * block of map-cells.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class Chunk {
+		
+		private final short[] terrain, material;
+		private final float[] visibility;
+		
+		private final long epoch;
+		
+		Chunk(long epoch) {
+			
+			this.terrain = new short[CHUNK_CELLS];
+			this.material = new short[CHUNK_CELLS];
+			this.visibility = new float[CHUNK_CELLS];
+			
+			Arrays.fill(terrain, (short) -1);
+			Arrays.fill(material, (short) -1);
+			
+			this.epoch = epoch;
+		}
+		
+		Chunk(Chunk toCopy, long epoch) {
+			
+			this.terrain = toCopy.terrain.clone();
+			this.material = toCopy.material.clone();
+			this.visibility = toCopy.visibility.clone();
+			
+			this.epoch = epoch;
+		}
+		
+		/**
+		 * Copy those cells of local column {@code lx} which are flagged in
+		 * {@code bits}, a run at a time.
+		 * 
+		 * @param from
+		 * @param to
+		 * @param lx
+		 * @param bits
+		 */
+		static void copyColumn(Chunk from, Chunk to, int lx, long bits) {
+			
+			final int offset = lx << CHUNK_SHIFT;
+			while (bits != 0L) {
+				final int start = Long.numberOfTrailingZeros(bits);
+				final int run = Long.numberOfTrailingZeros(~(bits >>> start));
+				final int i = offset + start;
+				
+				System.arraycopy(from.terrain, i, to.terrain, i, run);
+				System.arraycopy(from.material, i, to.material, i, run);
+				System.arraycopy(from.visibility, i, to.visibility, i, run);
+				
+				bits = (start + run >= CHUNK_SIZE) ? 0L : bits & (-1L << (start + run));
+			}
+		}
 		
-		final Color[][] result = new Color[colorIndices.length][colorIndices[0].length];
-		for (int x = 0; x < colorIndices.length; x++)
-			for (int y = 0; y < colorIndices[x].length; y++)
-				result[x][y] = ColorCache.get().get(colorIndices[x][y]);
-		return result;
+		/**
+		 * Erase those cells of local column {@code lx} which are flagged in
+		 * {@code bits}, a run at a time.
+		 * 
+		 * @param lx
+		 * @param bits
+		 */
+		void fillColumn(int lx, long bits) {
+			
+			final int offset = lx << CHUNK_SHIFT;
+			while (bits != 0L) {
+				final int start = Long.numberOfTrailingZeros(bits);
+				final int run = Long.numberOfTrailingZeros(~(bits >>> start));
+				final int i = offset + start;
+				
+				Arrays.fill(terrain, i, i + run, (short) -1);
+				Arrays.fill(material, i, i + run, (short) -1);
+				Arrays.fill(visibility, i, i + run, 0f);
+				
+				bits = (start + run >= CHUNK_SIZE) ? 0L : bits & (-1L << (start + run));
+			}
+		}
+	}
+	
+	/**
+	 * The "known" region of a single chunk. Each word covers one local column, and
+	 * so lines up with a single {@link GreasedRegion} bit-word.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class ChunkKnown {
+		
+		private final long[] words;
+		
+		private final long epoch;
+		
+		ChunkKnown(long epoch) {
+			
+			this.words = new long[CHUNK_SIZE];
+			this.epoch = epoch;
+		}
+		
+		ChunkKnown(ChunkKnown toCopy, long epoch) {
+			
+			this.words = toCopy.words.clone();
+			this.epoch = epoch;
+		}
 	}
 }
@@ -0,0 +1,741 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.snowjak.hivemind.config.Config;
+import org.snowjak.hivemind.util.ExtGreasedRegion;
+
+import squidpony.squidai.DijkstraMap;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * A hierarchical (HPA*) pathfinder over the passability-costs of an
+ * {@link IncrementalDijkstraMap}.
+ * <p>
+ * The map is partitioned into square clusters. Wherever two neighboring
+ * clusters share an open stretch of border, one or two transitions are placed
+ * across it; and for every cluster, the distances between all its transitions
+ * (keeping within the cluster) are computed up-front. A search is then an A*
+ * across this much smaller graph of transitions, followed by refining only as
+ * much of the result into single steps as was asked for.
+ * </p>
+ * <p>
+ * When the underlying costs change, {@link #repair(GreasedRegion) repair()}
+ * rebuilds only those clusters containing changed cells (and the transitions
+ * along their borders).
+ * </p>
+ * <p>
+ * Steps are taken and costed as {@link DijkstraMap} takes them under
+ * {@link squidpony.squidgrid.Measurement#EUCLIDEAN EUCLIDEAN} measurement --
+ * diagonal steps cost {@code sqrt(2)}, and are only blocked if both cells
+ * beside them are walls. But paths must pass through the transitions between
+ * clusters, so they're only near-optimal: usually a little longer than
+ * DijkstraMap's, and never shorter.
+ * </p>
+ * <p>
+ * Each cluster keeps its own copy of its cells' passability, and is never
+ * modified once built; {@link #repair(GreasedRegion) repair()} publishes a new
+ * set of clusters rather than changing the old. So any number of threads may
+ * {@link #findPath(Coord, Coord, int, GreasedRegion) search} at once, without
+ * locking -- even while the pathfinder is being repaired. Only repairs must be
+ * made one at a time, along with changes to the underlying costs (see
+ * {@link PathfindingGrid#getLock()}).
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class HierarchicalPathfinder {
+	
+	public static final String PREFERENCE_CLUSTER_SIZE = "pathfinding.cluster-size";
+	static {
+		Config.get().register(PREFERENCE_CLUSTER_SIZE, "Width/height of each hierarchical-pathfinding cluster", 16,
+				false, true);
+	}
+	
+	private static final float DIAGONAL = (float) Math.sqrt(2);
+	private static final float UNREACHABLE = Float.POSITIVE_INFINITY;
+	
+	/**
+	 * Open stretches of border at least this long get a transition at each end,
+	 * rather than a single one in the middle.
+	 */
+	private static final int WIDE_ENTRANCE = 6;
+	
+	private static final int START = -1, GOAL = -2;
+	
+	private static final ThreadLocal<ClusterScanner> SCANNERS = ThreadLocal.withInitial(ClusterScanner::new);
+	
+	private final IncrementalDijkstraMap costs;
+	private final int width, height, clusterSize, clustersX, clustersY;
+	private volatile Cluster[] clusters;
+	
+	/**
+	 * Construct a new HierarchicalPathfinder over the given costs, with clusters
+	 * of the {@link #PREFERENCE_CLUSTER_SIZE configured} size.
+	 * 
+	 * @param costs
+	 */
+	public HierarchicalPathfinder(IncrementalDijkstraMap costs) {
+		
+		this(costs, Config.get().getInt(PREFERENCE_CLUSTER_SIZE));
+	}
+	
+	/**
+	 * Construct a new HierarchicalPathfinder over the given costs.
+	 * 
+	 * @param costs
+	 * @param clusterSize
+	 */
+	public HierarchicalPathfinder(IncrementalDijkstraMap costs, int clusterSize) {
+		
+		this.costs = costs;
+		this.width = costs.width;
+		this.height = costs.height;
+		this.clusterSize = Math.max(2, clusterSize);
+		this.clustersX = (width + this.clusterSize - 1) / this.clusterSize;
+		this.clustersY = (height + this.clusterSize - 1) / this.clusterSize;
+		
+		final Cluster[] clusters = new Cluster[clustersX * clustersY];
+		for (int cx = 0; cx < clustersX; cx++)
+			for (int cy = 0; cy < clustersY; cy++)
+				clusters[cx * clustersY + cy] = buildCluster(cx, cy, null);
+		this.clusters = clusters;
+	}
+	
+	/**
+	 * Construct a new HierarchicalPathfinder over {@code costs}, which are a copy
+	 * of {@code toCopy}'s. Clusters are shared between the two until either is
+	 * {@link #repair(GreasedRegion) repaired}.
+	 * 
+	 * @param toCopy
+	 * @param costs
+	 */
+	public HierarchicalPathfinder(HierarchicalPathfinder toCopy, IncrementalDijkstraMap costs) {
+		
+		this.costs = costs;
+		this.width = toCopy.width;
+		this.height = toCopy.height;
+		this.clusterSize = toCopy.clusterSize;
+		this.clustersX = toCopy.clustersX;
+		this.clustersY = toCopy.clustersY;
+		this.clusters = toCopy.clusters;
+	}
+	
+	public int getClusterSize() {
+		
+		return clusterSize;
+	}
+	
+	/**
+	 * Bring this pathfinder up-to-date after the given cells' costs have changed.
+	 * Only those clusters containing changed cells are rebuilt outright; their
+	 * neighbors only have to re-examine the borders they share.
+	 * <p>
+	 * Searches already under way carry on with the clusters as they were.
+	 * </p>
+	 * 
+	 * @param changes
+	 */
+	public void repair(GreasedRegion changes) {
+		
+		final Set<Integer> touched = new HashSet<>();
+		ExtGreasedRegion.forEachCell(changes, (x, y) -> touched.add((x / clusterSize) * clustersY + (y / clusterSize)));
+		
+		final Set<Integer> affected = new HashSet<>(touched);
+		for (int i : touched) {
+			final int cx = i / clustersY, cy = i % clustersY;
+			if (cx > 0)
+				affected.add(i - clustersY);
+			if (cx < clustersX - 1)
+				affected.add(i + clustersY);
+			if (cy > 0)
+				affected.add(i - 1);
+			if (cy < clustersY - 1)
+				affected.add(i + 1);
+		}
+		
+		final Cluster[] repaired = clusters.clone();
+		for (int i : affected)
+			repaired[i] = buildCluster(i / clustersY, i % clustersY, touched.contains(i) ? null : repaired[i]);
+		clusters = repaired;
+	}
+	
+	/**
+	 * Find a path (of at most {@code length} steps) from {@code start} toward
+	 * {@code goal}. Only the first {@code length} steps are refined from the
+	 * abstract path.
+	 * <p>
+	 * The transitions between clusters know nothing of {@code impassable}, which
+	 * is only respected while refining. If those refined steps can't avoid
+	 * {@code impassable}, this returns {@code null} -- and you'll need to search
+	 * some other way.
+	 * </p>
+	 * 
+	 * @param start
+	 * @param goal
+	 * @param length
+	 * @param impassable
+	 *            may be {@code null}
+	 * @return the steps found (not including {@code start}), empty if
+	 *         {@code goal} can't be reached at all, or {@code null} if the path
+	 *         couldn't be refined around {@code impassable}
+	 */
+	public List<Coord> findPath(Coord start, Coord goal, int length, GreasedRegion impassable) {
+		
+		final Cluster[] clusters = this.clusters;
+		final ClusterScanner scanner = SCANNERS.get();
+		
+		if (start.equals(goal) || length < 1 || !clusters[getClusterIndex(start)].isPassable(start.x, start.y)
+				|| !clusters[getClusterIndex(goal)].isPassable(goal.x, goal.y))
+			return Collections.emptyList();
+		
+		final List<Coord> waypoints = findWaypoints(clusters, scanner, start, goal);
+		if (waypoints == null)
+			return Collections.emptyList();
+		waypoints.add(goal);
+		
+		final List<Coord> path = new ArrayList<>(length);
+		Coord current = start;
+		for (Coord waypoint : waypoints) {
+			if (path.size() >= length)
+				break;
+			if (waypoint.equals(current))
+				continue;
+			
+			if (impassable != null && impassable.contains(waypoint))
+				return null;
+			
+			if (getClusterIndex(current) != getClusterIndex(waypoint)) {
+				//
+				// A transition from one cluster to the next is always a single step.
+				path.add(waypoint);
+				
+			} else {
+				final Cluster cluster = clusters[getClusterIndex(current)];
+				scanner.scan(cluster, waypoint.x, waypoint.y, impassable);
+				if (!scanner.descend(cluster, current, path))
+					return null;
+			}
+			
+			current = waypoint;
+		}
+		
+		return (path.size() > length) ? new ArrayList<>(path.subList(0, length)) : path;
+	}
+	
+	/**
+	 * A* across the transitions, from {@code start} to {@code goal}.
+	 * 
+	 * @param clusters
+	 * @param scanner
+	 * @param start
+	 * @param goal
+	 * @return the transitions to pass through (not including {@code goal}), or
+	 *         {@code null} if {@code goal} can't be reached
+	 */
+	private List<Coord> findWaypoints(Cluster[] clusters, ClusterScanner scanner, Coord start, Coord goal) {
+		
+		final Cluster startCluster = clusters[getClusterIndex(start)], goalCluster = clusters[getClusterIndex(goal)];
+		
+		//
+		// Connect the start and goal to their clusters' transitions.
+		scanner.scan(goalCluster, goal.x, goal.y, null);
+		final float[] toGoal = new float[goalCluster.nodes.length];
+		for (int i = 0; i < toGoal.length; i++)
+			toGoal[i] = getScannedDistance(scanner, goalCluster, goalCluster.nodes[i]);
+		final float direct = (startCluster == goalCluster) ? getScannedDistance(scanner, goalCluster, getCell(start))
+				: UNREACHABLE;
+		
+		scanner.scan(startCluster, start.x, start.y, null);
+		
+		final Map<Integer, Float> distances = new HashMap<>();
+		final Map<Integer, Integer> parents = new HashMap<>();
+		final PriorityQueue<Open> open = new PriorityQueue<>();
+		
+		for (int i = 0; i < startCluster.nodes.length; i++)
+			relax(startCluster.nodes[i], START, getScannedDistance(scanner, startCluster, startCluster.nodes[i]), goal,
+					distances, parents, open);
+		if (direct < UNREACHABLE)
+			relax(GOAL, START, direct, goal, distances, parents, open);
+		
+		while (!open.isEmpty()) {
+			final Open next = open.poll();
+			if (next.distance > distances.get(next.cell))
+				continue;
+			
+			if (next.cell == GOAL)
+				return toWaypoints(parents);
+			
+			final Cluster cluster = clusters[getClusterIndex(next.cell)];
+			final int i = cluster.indexOf(next.cell), n = cluster.nodes.length;
+			
+			for (int j = 0; j < n; j++)
+				if (j != i)
+					relax(cluster.nodes[j], next.cell, next.distance + cluster.distances[i * n + j], goal, distances,
+							parents, open);
+			
+			for (int partner : cluster.partners[i])
+				relax(partner, next.cell, next.distance + 1f, goal, distances, parents, open);
+			
+			if (cluster == goalCluster)
+				relax(GOAL, next.cell, next.distance + toGoal[i], goal, distances, parents, open);
+		}
+		
+		return null;
+	}
+	
+	private void relax(int cell, int parent, float distance, Coord goal, Map<Integer, Float> distances,
+			Map<Integer, Integer> parents, PriorityQueue<Open> open) {
+		
+		if (distance >= UNREACHABLE)
+			return;
+		
+		final Float existing = distances.get(cell);
+		if (existing != null && existing <= distance)
+			return;
+		
+		distances.put(cell, distance);
+		parents.put(cell, parent);
+		open.add(new Open(cell, distance, distance + ((cell == GOAL) ? 0f : getHeuristic(cell, goal))));
+	}
+	
+	private List<Coord> toWaypoints(Map<Integer, Integer> parents) {
+		
+		final List<Coord> waypoints = new ArrayList<>();
+		int cell = parents.get(GOAL);
+		while (cell != START) {
+			waypoints.add(getCoord(cell));
+			cell = parents.get(cell);
+		}
+		Collections.reverse(waypoints);
+		return waypoints;
+	}
+	
+	/**
+	 * The octile distance -- never more than the true distance, so A* finds the
+	 * shortest route through the transitions.
+	 * 
+	 * @param cell
+	 * @param goal
+	 * @return
+	 */
+	private float getHeuristic(int cell, Coord goal) {
+		
+		final int dx = Math.abs(cell / height - goal.x), dy = Math.abs(cell % height - goal.y);
+		return Math.abs(dx - dy) + DIAGONAL * Math.min(dx, dy);
+	}
+	
+	/**
+	 * (Re-)build the given cluster's transitions. If the cluster's interior is
+	 * unchanged since {@code previous} was built, its passability is re-used; and
+	 * if its transitions turn out the same, so are its distances.
+	 * 
+	 * @param cx
+	 * @param cy
+	 * @param previous
+	 *            may be {@code null}
+	 * @return
+	 */
+	private Cluster buildCluster(int cx, int cy, Cluster previous) {
+		
+		final int x = cx * clusterSize, y = cy * clusterSize;
+		final int w = Math.min(clusterSize, width - x), h = Math.min(clusterSize, height - y);
+		
+		final boolean[] passable;
+		if (previous != null)
+			passable = previous.passable;
+		else {
+			passable = new boolean[w * h];
+			for (int i = 0; i < w; i++)
+				for (int j = 0; j < h; j++)
+					passable[i * h + j] = isPassable(x + i, y + j);
+		}
+		
+		final Map<Integer, List<Integer>> transitions = new LinkedHashMap<>();
+		if (cx > 0)
+			addTransitions(x, y, 0, 1, h, -1, 0, transitions);
+		if (cx < clustersX - 1)
+			addTransitions(x + w - 1, y, 0, 1, h, 1, 0, transitions);
+		if (cy > 0)
+			addTransitions(x, y, 1, 0, w, 0, -1, transitions);
+		if (cy < clustersY - 1)
+			addTransitions(x, y + h - 1, 1, 0, w, 0, 1, transitions);
+		
+		final int n = transitions.size();
+		final int[] nodes = new int[n];
+		final int[][] partners = new int[n][];
+		int i = 0;
+		for (Map.Entry<Integer, List<Integer>> e : transitions.entrySet()) {
+			nodes[i] = e.getKey();
+			partners[i] = e.getValue().stream().mapToInt(Integer::intValue).toArray();
+			i++;
+		}
+		
+		if (previous != null && Arrays.equals(previous.nodes, nodes))
+			return new Cluster(x, y, w, h, passable, nodes, partners, previous.distances);
+		
+		final Cluster cluster = new Cluster(x, y, w, h, passable, nodes, partners, new float[n * n]);
+		final ClusterScanner scanner = SCANNERS.get();
+		for (int from = 0; from < n; from++) {
+			scanner.scan(cluster, nodes[from] / height, nodes[from] % height, null);
+			for (int to = 0; to < n; to++)
+				cluster.distances[from * n + to] = getScannedDistance(scanner, cluster, nodes[to]);
+		}
+		return cluster;
+	}
+	
+	/**
+	 * Walk one border of a cluster, placing transitions across each open stretch.
+	 * Both clusters sharing a border walk it identically, and so agree on where
+	 * its transitions lie.
+	 * 
+	 * @param x
+	 *            the first cell of the border, inside the cluster
+	 * @param y
+	 * @param stepX
+	 *            the direction along the border
+	 * @param stepY
+	 * @param length
+	 *            the length of the border
+	 * @param outX
+	 *            the direction across the border
+	 * @param outY
+	 * @param transitions
+	 *            to add transitions to, as inside-cell -> outside-cells
+	 */
+	private void addTransitions(int x, int y, int stepX, int stepY, int length, int outX, int outY,
+			Map<Integer, List<Integer>> transitions) {
+		
+		int runStart = -1;
+		for (int i = 0; i <= length; i++) {
+			final int ix = x + stepX * i, iy = y + stepY * i;
+			final boolean open = (i < length) && isPassable(ix, iy) && isPassable(ix + outX, iy + outY);
+			
+			if (open && runStart < 0)
+				runStart = i;
+			else if (!open && runStart >= 0) {
+				final int runEnd = i - 1;
+				if (runEnd - runStart + 1 >= WIDE_ENTRANCE) {
+					addTransition(x + stepX * runStart, y + stepY * runStart, outX, outY, transitions);
+					addTransition(x + stepX * runEnd, y + stepY * runEnd, outX, outY, transitions);
+				} else {
+					final int middle = (runStart + runEnd) / 2;
+					addTransition(x + stepX * middle, y + stepY * middle, outX, outY, transitions);
+				}
+				runStart = -1;
+			}
+		}
+	}
+	
+	private void addTransition(int x, int y, int outX, int outY, Map<Integer, List<Integer>> transitions) {
+		
+		transitions.computeIfAbsent(getCell(x, y), (k) -> new ArrayList<>(2)).add(getCell(x + outX, y + outY));
+	}
+	
+	private float getScannedDistance(ClusterScanner scanner, Cluster cluster, int cell) {
+		
+		return scanner.getDistance(cluster, cell / height, cell % height);
+	}
+	
+	/**
+	 * Read directly from the underlying costs -- so only while building clusters.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	private boolean isPassable(int x, int y) {
+		
+		return costs.physicalMap[x][y] != DijkstraMap.WALL;
+	}
+	
+	private int getClusterIndex(Coord c) {
+		
+		return (c.x / clusterSize) * clustersY + (c.y / clusterSize);
+	}
+	
+	private int getClusterIndex(int cell) {
+		
+		return (cell / height / clusterSize) * clustersY + (cell % height / clusterSize);
+	}
+	
+	private int getCell(Coord c) {
+		
+		return getCell(c.x, c.y);
+	}
+	
+	private int getCell(int x, int y) {
+		
+		return x * height + y;
+	}
+	
+	private Coord getCoord(int cell) {
+		
+		return Coord.get(cell / height, cell % height);
+	}
+	
+	/**
+	 * One cluster's passability, its transitions, and the distances between them.
+	 * Never modified once built, so may be shared between copies of a pathfinder
+	 * and searched by any number of threads.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class Cluster {
+		
+		private final int x, y, width, height;
+		private final boolean[] passable;
+		private final int[] nodes;
+		private final int[][] partners;
+		private final float[] distances;
+		
+		public Cluster(int x, int y, int width, int height, boolean[] passable, int[] nodes, int[][] partners,
+				float[] distances) {
+			
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.passable = passable;
+			this.nodes = nodes;
+			this.partners = partners;
+			this.distances = distances;
+		}
+		
+		public int indexOf(int cell) {
+			
+			for (int i = 0; i < nodes.length; i++)
+				if (nodes[i] == cell)
+					return i;
+			return -1;
+		}
+		
+		public boolean isPassable(int x, int y) {
+			
+			return passable[(x - this.x) * height + (y - this.y)];
+		}
+		
+		/**
+		 * A diagonal step is blocked only if the cells on both sides of it are walls
+		 * (just as with {@link DijkstraMap}). Both ends of the step must lie within
+		 * this cluster -- and so, then, do the cells beside it.
+		 * 
+		 * @param x
+		 * @param y
+		 * @param dx
+		 * @param dy
+		 * @return
+		 */
+		public boolean canStep(int x, int y, int dx, int dy) {
+			
+			if (!isPassable(x + dx, y + dy))
+				return false;
+			if (dx == 0 || dy == 0)
+				return true;
+			return isPassable(x + dx, y) || isPassable(x, y + dy);
+		}
+	}
+	
+	private static class Open implements Comparable<Open> {
+		
+		private final int cell;
+		private final float distance, estimate;
+		
+		public Open(int cell, float distance, float estimate) {
+			
+			this.cell = cell;
+			this.distance = distance;
+			this.estimate = estimate;
+		}
+		
+		@Override
+		public int compareTo(Open o) {
+			
+			return Float.compare(estimate, o.estimate);
+		}
+	}
+	
+	/**
+	 * Dijkstra's algorithm, confined to a single cluster. Each thread has its own,
+	 * grown to fit the largest cluster it's been asked to scan.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class ClusterScanner {
+		
+		private float[] distances = new float[0];
+		private int[] heapCells = new int[64];
+		private float[] heapDistances = new float[64];
+		private int heapSize = 0;
+		
+		/**
+		 * Find the distance from every cell of the given cluster to
+		 * {@code (goalX,goalY)}, without leaving the cluster.
+		 * 
+		 * @param cluster
+		 * @param goalX
+		 * @param goalY
+		 * @param impassable
+		 *            may be {@code null}
+		 */
+		public void scan(Cluster cluster, int goalX, int goalY, GreasedRegion impassable) {
+			
+			if (distances.length < cluster.width * cluster.height)
+				distances = new float[cluster.width * cluster.height];
+			Arrays.fill(distances, 0, cluster.width * cluster.height, UNREACHABLE);
+			heapSize = 0;
+			
+			final int goal = (goalX - cluster.x) * cluster.height + (goalY - cluster.y);
+			distances[goal] = 0f;
+			push(goal, 0f);
+			
+			while (heapSize > 0) {
+				final float distance = heapDistances[0];
+				final int local = pop();
+				if (distance > distances[local])
+					continue;
+				
+				final int x = cluster.x + local / cluster.height, y = cluster.y + local % cluster.height;
+				for (int dx = -1; dx <= 1; dx++)
+					for (int dy = -1; dy <= 1; dy++) {
+						if (dx == 0 && dy == 0)
+							continue;
+						final int nx = x + dx, ny = y + dy;
+						if (nx < cluster.x || ny < cluster.y || nx >= cluster.x + cluster.width
+								|| ny >= cluster.y + cluster.height)
+							continue;
+						if (!cluster.canStep(x, y, dx, dy) || (impassable != null && impassable.contains(nx, ny)))
+							continue;
+						
+						final int neighbor = (nx - cluster.x) * cluster.height + (ny - cluster.y);
+						final float next = distance + ((dx != 0 && dy != 0) ? DIAGONAL : 1f);
+						if (next < distances[neighbor]) {
+							distances[neighbor] = next;
+							push(neighbor, next);
+						}
+					}
+			}
+		}
+		
+		/**
+		 * @param cluster
+		 * @param x
+		 * @param y
+		 * @return the distance, as of the last {@link #scan(Cluster, int, int,
+		 *         GreasedRegion) scan}, from the given cell
+		 */
+		public float getDistance(Cluster cluster, int x, int y) {
+			
+			return distances[(x - cluster.x) * cluster.height + (y - cluster.y)];
+		}
+		
+		/**
+		 * Walk downhill from {@code from} to the goal of the last
+		 * {@link #scan(Cluster, int, int, GreasedRegion) scan}, adding each step to
+		 * {@code path}.
+		 * 
+		 * @param cluster
+		 * @param from
+		 * @param path
+		 * @return {@code false} if the goal can't be reached from {@code from}
+		 */
+		public boolean descend(Cluster cluster, Coord from, List<Coord> path) {
+			
+			int x = from.x, y = from.y;
+			float here = getDistance(cluster, x, y);
+			if (here >= UNREACHABLE)
+				return false;
+			
+			while (here > 0f) {
+				int bestX = x, bestY = y;
+				float best = here;
+				for (int dx = -1; dx <= 1; dx++)
+					for (int dy = -1; dy <= 1; dy++) {
+						final int nx = x + dx, ny = y + dy;
+						if ((dx == 0 && dy == 0) || nx < cluster.x || ny < cluster.y
+								|| nx >= cluster.x + cluster.width || ny >= cluster.y + cluster.height)
+							continue;
+						if (!cluster.canStep(x, y, dx, dy))
+							continue;
+						final float there = getDistance(cluster, nx, ny);
+						if (there < best) {
+							best = there;
+							bestX = nx;
+							bestY = ny;
+						}
+					}
+				
+				if (bestX == x && bestY == y)
+					return false;
+				
+				x = bestX;
+				y = bestY;
+				here = best;
+				path.add(Coord.get(x, y));
+			}
+			
+			return true;
+		}
+		
+		private void push(int cell, float distance) {
+			
+			if (heapSize == heapCells.length) {
+				heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+				heapDistances = Arrays.copyOf(heapDistances, heapSize * 2);
+			}
+			
+			int i = heapSize++;
+			while (i > 0) {
+				final int parent = (i - 1) / 2;
+				if (heapDistances[parent] <= distance)
+					break;
+				heapCells[i] = heapCells[parent];
+				heapDistances[i] = heapDistances[parent];
+				i = parent;
+			}
+			heapCells[i] = cell;
+			heapDistances[i] = distance;
+		}
+		
+		private int pop() {
+			
+			final int result = heapCells[0];
+			final int lastCell = heapCells[--heapSize];
+			final float lastDistance = heapDistances[heapSize];
+			
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize)
+					break;
+				if (child + 1 < heapSize && heapDistances[child + 1] < heapDistances[child])
+					child++;
+				if (heapDistances[child] >= lastDistance)
+					break;
+				heapCells[i] = heapCells[child];
+				heapDistances[i] = heapDistances[child];
+				i = child;
+			}
+			heapCells[i] = lastCell;
+			heapDistances[i] = lastDistance;
+			
+			return result;
+		}
+	}
+}
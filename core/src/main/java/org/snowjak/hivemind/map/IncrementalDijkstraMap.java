@@ -0,0 +1,306 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.map;
+
+import java.util.Arrays;
+
+import org.snowjak.hivemind.TerrainTypes;
+import org.snowjak.hivemind.TerrainTypes.TerrainType;
+import org.snowjak.hivemind.util.ExtGreasedRegion;
+
+import squidpony.squidai.DijkstraMap;
+import squidpony.squidgrid.Measurement;
+import squidpony.squidmath.GreasedRegion;
+import squidpony.squidmath.IRNG;
+
+/**
+ * A {@link DijkstraMap} which can be kept up-to-date with a {@link GameMap}
+ * incrementally.
+ * <p>
+ * Given those cells of a GameMap which might have changed (see
+ * {@link GameMap#addChangedSince(long, GreasedRegion) addChangedSince()}),
+ * {@link #findChanges(GameMap, GreasedRegion, GreasedRegion) findChanges()}
+ * picks out only those whose passability differs from this pathfinder's, and
+ * {@link #applyChanges(GreasedRegion) applyChanges()} rewrites only those. The
+ * full {@link #initialize(GameMap) initialization} -- which allocates several
+ * new map-sized arrays -- is only needed for a new or resized GameMap.
+ * </p>
+ * <p>
+ * Each IncrementalDijkstraMap also keeps a 128-bit {@link #getFingerprint()
+ * fingerprint} of its passability-costs, so that pathfinders with identical
+ * costs can be found (and shared) cheaply -- see {@link PathfindingGridPool}.
+ * The fingerprint is wide enough that two pathfinders with matching
+ * fingerprints can be trusted to have matching costs, without comparing them
+ * cell-by-cell.
+ * </p>
+ * <p>
+ * Every {@link #findPath(int, int, java.util.Collection, java.util.Collection,
+ * squidpony.squidmath.Coord, squidpony.squidmath.Coord...) path-search}
+ * re-scans from this map's passability-costs, so updating those costs never
+ * leaves a stale distance-field behind.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class IncrementalDijkstraMap extends DijkstraMap {
+	
+	private static final long serialVersionUID = 2468236391043315474L;
+	
+	private static volatile double[] TERRAIN_COSTS = new double[0];
+	
+	private long fingerprintLow, fingerprintHigh;
+	
+	/**
+	 * Construct a new (as-yet uninitialized) IncrementalDijkstraMap.
+	 * 
+	 * @param measurement
+	 * @param rng
+	 */
+	public IncrementalDijkstraMap(Measurement measurement, IRNG rng) {
+		
+		super(rng);
+		this.measurement = measurement;
+	}
+	
+	/**
+	 * Construct a new IncrementalDijkstraMap with the same passability-costs as an
+	 * existing one.
+	 * 
+	 * @param toCopy
+	 */
+	public IncrementalDijkstraMap(IncrementalDijkstraMap toCopy) {
+		
+		this(toCopy.measurement, toCopy.rng);
+		copyCostsFrom(toCopy);
+	}
+	
+	/**
+	 * Overwrite this pathfinder's passability-costs with another's. If the two are
+	 * the same size, this re-uses this pathfinder's arrays rather than allocating
+	 * new ones.
+	 * 
+	 * @param other
+	 * @return this IncrementalDijkstraMap, for chaining
+	 */
+	public IncrementalDijkstraMap copyCostsFrom(IncrementalDijkstraMap other) {
+		
+		if (physicalMap == null || width != other.width || height != other.height)
+			initialize(other.physicalMap);
+		else
+			for (int x = 0; x < width; x++) {
+				System.arraycopy(other.physicalMap[x], 0, physicalMap[x], 0, height);
+				System.arraycopy(other.physicalMap[x], 0, gradientMap[x], 0, height);
+			}
+		
+		measurement = other.measurement;
+		fingerprintLow = other.fingerprintLow;
+		fingerprintHigh = other.fingerprintHigh;
+		return this;
+	}
+	
+	/**
+	 * (Re-)initialize this pathfinder's passability-costs from the given
+	 * {@link GameMap}. Unknown cells are considered passable, just as with
+	 * {@link GameMap#getSquidCharMap()}.
+	 * 
+	 * @param map
+	 * @return this IncrementalDijkstraMap, for chaining
+	 */
+	public IncrementalDijkstraMap initialize(GameMap map) {
+		
+		return initialize(map.getSquidCharMap());
+	}
+	
+	/**
+	 * (Re-)initialize this pathfinder's passability-costs from the given
+	 * {@code char[][]} (as from {@link GameMap#getSquidCharMap()}).
+	 * 
+	 * @param chars
+	 * @return this IncrementalDijkstraMap, for chaining
+	 */
+	@Override
+	public IncrementalDijkstraMap initialize(char[][] chars) {
+		
+		super.initialize(chars);
+		
+		final Fingerprint fingerprint = getFingerprint(chars);
+		fingerprintLow = fingerprint.low;
+		fingerprintHigh = fingerprint.high;
+		return this;
+	}
+	
+	/**
+	 * Add to {@code into} every cell of {@code candidates} whose passability in
+	 * the given {@link GameMap} differs from this pathfinder's.
+	 * 
+	 * @param map
+	 * @param candidates
+	 * @param into
+	 * @return the number of cells added
+	 */
+	public int findChanges(GameMap map, GreasedRegion candidates, GreasedRegion into) {
+		
+		final int before = into.size();
+		map.readRegion(candidates, (x, y, terrainIndex, materialIndex) -> {
+			if (physicalMap[x][y] != getCost(terrainIndex))
+				into.insert(x, y);
+		});
+		return into.size() - before;
+	}
+	
+	/**
+	 * Flip the passability of every cell in the given region -- as found by
+	 * {@link #findChanges(GameMap, GreasedRegion, GreasedRegion) findChanges()}.
+	 * 
+	 * @param changes
+	 */
+	public void applyChanges(GreasedRegion changes) {
+		
+		ExtGreasedRegion.forEachCell(changes, (x, y) -> {
+			final double cost = (physicalMap[x][y] == WALL) ? FLOOR : WALL;
+			physicalMap[x][y] = cost;
+			gradientMap[x][y] = cost;
+			fingerprintLow ^= hashCellLow(x, y);
+			fingerprintHigh ^= hashCellHigh(x, y);
+		});
+	}
+	
+	/**
+	 * @return a fingerprint of this pathfinder's passability-costs -- two
+	 *         IncrementalDijkstraMaps of the same size with different costs will
+	 *         (all but certainly) have different fingerprints
+	 */
+	public Fingerprint getFingerprint() {
+		
+		return new Fingerprint(fingerprintLow, fingerprintHigh);
+	}
+	
+	/**
+	 * @param changes
+	 * @return the {@link #getFingerprint() fingerprint} this pathfinder would have
+	 *         after {@link #applyChanges(GreasedRegion) applying} the given changes
+	 */
+	public Fingerprint getFingerprint(GreasedRegion changes) {
+		
+		final long[] result = { fingerprintLow, fingerprintHigh };
+		ExtGreasedRegion.forEachCell(changes, (x, y) -> {
+			result[0] ^= hashCellLow(x, y);
+			result[1] ^= hashCellHigh(x, y);
+		});
+		return new Fingerprint(result[0], result[1]);
+	}
+	
+	/**
+	 * @param chars
+	 * @return the {@link #getFingerprint() fingerprint} an IncrementalDijkstraMap
+	 *         would have, if {@link #initialize(char[][]) initialized} from the
+	 *         given {@code char[][]} (as from {@link GameMap#getSquidCharMap()})
+	 */
+	public static Fingerprint getFingerprint(char[][] chars) {
+		
+		long low = 0, high = 0;
+		for (int x = 0; x < chars.length; x++)
+			for (int y = 0; y < chars[x].length; y++)
+				if (getCost(chars[x][y]) == WALL) {
+					low ^= hashCellLow(x, y);
+					high ^= hashCellHigh(x, y);
+				}
+		return new Fingerprint(low, high);
+	}
+	
+	/**
+	 * Looking up each cell's {@link TerrainType} means taking {@link TerrainTypes}'
+	 * lock, once per cell -- so we remember each terrain-index's cost here
+	 * instead. (A terrain-index never changes its meaning once registered.)
+	 * 
+	 * @param terrainIndex
+	 * @return
+	 */
+	private static double getCost(short terrainIndex) {
+		
+		if (terrainIndex < 0)
+			return FLOOR;
+		
+		double[] costs = TERRAIN_COSTS;
+		if (terrainIndex >= costs.length || costs[terrainIndex] == 0)
+			costs = cacheCost(terrainIndex);
+		return costs[terrainIndex];
+	}
+	
+	private static synchronized double[] cacheCost(short terrainIndex) {
+		
+		final double[] costs = (terrainIndex < TERRAIN_COSTS.length) ? TERRAIN_COSTS
+				: Arrays.copyOf(TERRAIN_COSTS, terrainIndex + 1);
+		
+		final TerrainType tt = TerrainTypes.get().getAt(terrainIndex);
+		costs[terrainIndex] = (tt != null) ? getCost(tt.getSquidChar()) : FLOOR;
+		
+		TERRAIN_COSTS = costs;
+		return costs;
+	}
+	
+	private static double getCost(char squidChar) {
+		
+		return (squidChar == '#') ? WALL : FLOOR;
+	}
+	
+	private static long hashCellLow(int x, int y) {
+		
+		long z = (((long) x << 32) | (y & 0xFFFFFFFFL)) + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * An independent hash of the cell -- different input, different mixing
+	 * constants -- from {@link #hashCellLow(int, int)}.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	private static long hashCellHigh(int x, int y) {
+		
+		long z = (((long) y << 32) | (x & 0xFFFFFFFFL)) + 0xD1B54A32D192ED03L;
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return z ^ (z >>> 33);
+	}
+	
+	/**
+	 * A 128-bit fingerprint of a set of passability-costs.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static class Fingerprint {
+		
+		private final long low, high;
+		
+		public Fingerprint(long low, long high) {
+			
+			this.low = low;
+			this.high = high;
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			return Long.hashCode(low);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Fingerprint))
+				return false;
+			final Fingerprint other = (Fingerprint) obj;
+			return low == other.low && high == other.high;
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.map;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * A pathfinding cost-grid, as handed out by {@link PathfindingGridPool}, and
+ * possibly shared by several Entities whose maps agree on which cells are
+ * passable.
+ * <p>
+ * Path-searches write to the underlying {@link IncrementalDijkstraMap}'s
+ * working-state, so they must hold this grid's {@link #getLock() lock}. The
+ * pool only ever changes a grid's costs while holding that lock, too.
+ * </p>
+ * <p>
+ * A grid may also carry a {@link #getHierarchy() HierarchicalPathfinder}, built
+ * the first time it's asked for and repaired alongside the grid's costs from
+ * then on.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class PathfindingGrid {
+	
+	private static final AtomicLong VERSIONS = new AtomicLong();
+	
+	private final IncrementalDijkstraMap pathfinder;
+	private final ReentrantLock lock = new ReentrantLock();
+	private volatile HierarchicalPathfinder hierarchy = null;
+	
+	private volatile long version = VERSIONS.incrementAndGet();
+	
+	PathfindingGridPool.Key key = null;
+	int references = 0;
+	
+	PathfindingGrid(IncrementalDijkstraMap pathfinder) {
+		
+		this.pathfinder = pathfinder;
+	}
+	
+	/**
+	 * @return this grid's pathfinder -- only to be used while holding this grid's
+	 *         {@link #getLock() lock}
+	 */
+	public IncrementalDijkstraMap getPathfinder() {
+		
+		return pathfinder;
+	}
+	
+	/**
+	 * @return this grid's {@link HierarchicalPathfinder} (building it if this is
+	 *         the first time it's been asked for) -- only to be called while
+	 *         holding this grid's {@link #getLock() lock}, though the pathfinder
+	 *         it returns may be searched without
+	 */
+	public HierarchicalPathfinder getHierarchy() {
+		
+		if (hierarchy == null)
+			hierarchy = new HierarchicalPathfinder(pathfinder);
+		return hierarchy;
+	}
+	
+	/**
+	 * Repair this grid's {@link HierarchicalPathfinder} (if it has one yet), once
+	 * the given cells' costs have been changed.
+	 * 
+	 * @param changes
+	 */
+	void repairHierarchy(GreasedRegion changes) {
+		
+		if (hierarchy != null)
+			hierarchy.repair(changes);
+	}
+	
+	/**
+	 * Give this grid a copy of {@code original}'s {@link HierarchicalPathfinder}
+	 * (if it has one yet), repaired for the given changes. This grid's costs must
+	 * already be {@code original}'s, with those changes applied.
+	 * 
+	 * @param original
+	 * @param changes
+	 */
+	void copyHierarchy(PathfindingGrid original, GreasedRegion changes) {
+		
+		final HierarchicalPathfinder toCopy = original.hierarchy;
+		if (toCopy == null)
+			return;
+		
+		final HierarchicalPathfinder copy = new HierarchicalPathfinder(toCopy, pathfinder);
+		copy.repair(changes);
+		hierarchy = copy;
+	}
+	
+	public ReentrantLock getLock() {
+		
+		return lock;
+	}
+	
+	/**
+	 * Get this grid's version. This is unique across all grids, and changes
+	 * whenever this grid's costs change -- so anything computed from a grid can be
+	 * keyed by its version.
+	 * 
+	 * @return
+	 */
+	public long getVersion() {
+		
+		return version;
+	}
+	
+	void bumpVersion() {
+		
+		version = VERSIONS.incrementAndGet();
+	}
+	
+	/**
+	 * @return the number of Entities currently sharing this grid
+	 */
+	public int getReferenceCount() {
+		
+		return references;
+	}
+}
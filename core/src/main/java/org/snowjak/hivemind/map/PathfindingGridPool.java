@@ -0,0 +1,301 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.map;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.snowjak.hivemind.RNG;
+import org.snowjak.hivemind.config.Config;
+import org.snowjak.hivemind.util.ExtGreasedRegion;
+import org.snowjak.hivemind.util.cache.LRUMappedCache;
+
+import squidpony.squidgrid.Measurement;
+
+/**
+ * Hands out {@link PathfindingGrid}s, sharing one grid between all those
+ * {@link GameMap}s which agree on which cells are passable -- so memory and
+ * initialization-time scale with the number of distinct states of knowledge,
+ * not with the number of Entities that need to pathfind.
+ * <p>
+ * Grids are {@link Key keyed} by their size and their costs' 128-bit
+ * {@link IncrementalDijkstraMap#getFingerprint() fingerprint} (trusted without
+ * comparing costs cell-by-cell), and are reference-counted. When a GameMap changes, its grid is
+ * {@link #update(PathfindingGrid, GameMap, long) updated}: if some other grid
+ * already has the new costs, the two GameMaps share it; if nobody else holds
+ * the old grid, it's changed in place; otherwise, it is copied first. Either
+ * way, the grid's {@link HierarchicalPathfinder} (if any) is only repaired
+ * where the costs changed.
+ * </p>
+ * <p>
+ * Grids which nobody holds any longer are kept (up to
+ * {@link #PREFERENCE_IDLE_GRIDS}, least-recently-released evicted first), in
+ * case some GameMap comes around to the same state again.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class PathfindingGridPool {
+	
+	public static final String PREFERENCE_IDLE_GRIDS = "pathfinding.idle-grids";
+	static {
+		Config.get().register(PREFERENCE_IDLE_GRIDS, "Number of unused pathfinding grids to keep for reuse", 8, false,
+				true);
+	}
+	
+	private static PathfindingGridPool __INSTANCE = null;
+	
+	/**
+	 * @return the singleton {@link PathfindingGridPool} instance
+	 */
+	public static PathfindingGridPool get() {
+		
+		if (__INSTANCE == null)
+			synchronized (PathfindingGridPool.class) {
+				if (__INSTANCE == null)
+					__INSTANCE = new PathfindingGridPool();
+			}
+		return __INSTANCE;
+	}
+	
+	private final Map<Key, PathfindingGrid> live = new HashMap<>();
+	private final LRUMappedCache<Key, PathfindingGrid> idle = new LRUMappedCache<>(
+			Math.max(1, Config.get().getInt(PREFERENCE_IDLE_GRIDS)), (k, g) -> g.key = null, (k) -> null,
+			(k) -> null);
+	
+	private final ExtGreasedRegion candidates = new ExtGreasedRegion(1, 1), changes = new ExtGreasedRegion(1, 1);
+	
+	private PathfindingGridPool() {
+		
+	}
+	
+	/**
+	 * Acquire a grid whose costs match the given {@link GameMap}'s current state,
+	 * sharing an existing grid if possible. Be sure to {@link #release(PathfindingGrid)
+	 * release} it when you're done with it.
+	 * 
+	 * @param map
+	 * @return
+	 */
+	public PathfindingGrid acquire(GameMap map) {
+		
+		//
+		// Reading and fingerprinting the whole map is slow, so we do it outside the
+		// lock.
+		final char[][] chars = map.getSquidCharMap();
+		final Key key = new Key(map.getWidth(), map.getHeight(), IncrementalDijkstraMap.getFingerprint(chars));
+		
+		synchronized (this) {
+			final PathfindingGrid existing = find(key);
+			if (existing != null)
+				return reference(existing);
+		}
+		
+		//
+		// So is building a new grid. Somebody else may have registered the same costs
+		// in the meantime -- in which case, we use theirs.
+		final PathfindingGrid grid = new PathfindingGrid(
+				new IncrementalDijkstraMap(Measurement.EUCLIDEAN, RNG.get()).initialize(chars));
+		
+		synchronized (this) {
+			final PathfindingGrid existing = find(key);
+			if (existing != null)
+				return reference(existing);
+			
+			return reference(register(key, grid));
+		}
+	}
+	
+	/**
+	 * Bring the given grid up-to-date with the given {@link GameMap}, which has
+	 * changed since the given {@link GameMap#getVersion() version}. The returned
+	 * grid may not be the one you passed in -- in which case, the old grid has
+	 * been {@link #release(PathfindingGrid) released} for you.
+	 * 
+	 * @param grid
+	 * @param map
+	 * @param sinceVersion
+	 * @return the grid you should now hold
+	 */
+	public PathfindingGrid update(PathfindingGrid grid, GameMap map, long sinceVersion) {
+		
+		synchronized (this) {
+			final IncrementalDijkstraMap pathfinder = grid.getPathfinder();
+			
+			if (candidates.width != map.getWidth() || candidates.height != map.getHeight()) {
+				candidates.resizeAndEmpty(map.getWidth(), map.getHeight());
+				changes.resizeAndEmpty(map.getWidth(), map.getHeight());
+			} else {
+				candidates.empty();
+				changes.empty();
+			}
+			
+			map.addChangedSince(sinceVersion, candidates);
+			if (pathfinder.findChanges(map, candidates, changes) == 0)
+				return grid;
+			
+			final Key key = new Key(map.getWidth(), map.getHeight(), pathfinder.getFingerprint(changes));
+			
+			//
+			// Does somebody else already have these costs?
+			final PathfindingGrid existing = find(key);
+			if (existing != null) {
+				reference(existing);
+				release(grid);
+				return existing;
+			}
+			
+			//
+			// If nobody else holds this grid (and nobody's searching it right now), we
+			// can change it in place.
+			if (grid.references == 1 && grid.key != null && grid.getLock().tryLock()) {
+				try {
+					live.remove(grid.key);
+					pathfinder.applyChanges(changes);
+					grid.repairHierarchy(changes);
+					grid.bumpVersion();
+					return register(key, grid);
+				} finally {
+					grid.getLock().unlock();
+				}
+			}
+			
+			//
+			// Otherwise, copy-on-write.
+			final IncrementalDijkstraMap copy = new IncrementalDijkstraMap(pathfinder);
+			copy.applyChanges(changes);
+			final PathfindingGrid copied = new PathfindingGrid(copy);
+			copied.copyHierarchy(grid, changes);
+			release(grid);
+			return reference(register(key, copied));
+		}
+	}
+	
+	/**
+	 * Release the given grid. Once nobody holds it, it is kept for a while in case
+	 * somebody needs it again.
+	 * 
+	 * @param grid
+	 */
+	public void release(PathfindingGrid grid) {
+		
+		synchronized (this) {
+			if (--grid.references > 0 || grid.key == null)
+				return;
+			
+			live.remove(grid.key);
+			idle.set(grid.key, grid);
+		}
+	}
+	
+	/**
+	 * @return the number of grids currently held by somebody
+	 */
+	public int getLiveCount() {
+		
+		synchronized (this) {
+			return live.size();
+		}
+	}
+	
+	/**
+	 * @return the number of grids currently held by nobody, but kept for reuse
+	 */
+	public int getIdleCount() {
+		
+		return idle.size();
+	}
+	
+	private PathfindingGrid find(Key key) {
+		
+		final PathfindingGrid existing = live.get(key);
+		if (existing != null)
+			return existing;
+		
+		return idle.getIfPresent(key);
+	}
+	
+	private PathfindingGrid reference(PathfindingGrid grid) {
+		
+		if (grid.references++ == 0 && grid.key != null) {
+			idle.remove(grid.key);
+			live.put(grid.key, grid);
+		}
+		return grid;
+	}
+	
+	/**
+	 * Give the given grid the given key. If some other grid already has the same
+	 * key, this grid is left un-keyed, and so won't be shared.
+	 * 
+	 * @param key
+	 * @param grid
+	 * @return {@code grid}
+	 */
+	private PathfindingGrid register(Key key, PathfindingGrid grid) {
+		
+		if (find(key) == null) {
+			grid.key = key;
+			if (grid.references > 0)
+				live.put(key, grid);
+		} else
+			grid.key = null;
+		return grid;
+	}
+	
+	/**
+	 * Identifies a set of pathfinding-costs.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static class Key {
+		
+		private final int width, height;
+		private final IncrementalDijkstraMap.Fingerprint fingerprint;
+		
+		public Key(int width, int height, IncrementalDijkstraMap.Fingerprint fingerprint) {
+			
+			this.width = width;
+			this.height = height;
+			this.fingerprint = fingerprint;
+		}
+		
+		public int getWidth() {
+			
+			return width;
+		}
+		
+		public int getHeight() {
+			
+			return height;
+		}
+		
+		public IncrementalDijkstraMap.Fingerprint getFingerprint() {
+			
+			return fingerprint;
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			int result = width;
+			result = 31 * result + height;
+			result = 31 * result + fingerprint.hashCode();
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return width == other.width && height == other.height && fingerprint.equals(other.fingerprint);
+		}
+	}
+}
@@ -0,0 +1,464 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.snowjak.hivemind.Context;
+import org.snowjak.hivemind.RNG;
+import org.snowjak.hivemind.config.Config;
+import org.snowjak.hivemind.engine.Engine;
+import org.snowjak.hivemind.engine.systems.RunnableExecutingSystem;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import squidpony.squidgrid.Measurement;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * Runs path-searches on a fixed-size pool of worker-threads, and hands their
+ * results back on the {@link Engine}-thread (by way of the
+ * {@link RunnableExecutingSystem}).
+ * <p>
+ * {@link #request(PathfindingGrid, Coord, Coord, int, GreasedRegion) Requests}
+ * for the same search -- same grid (and grid-{@link PathfindingGrid#getVersion()
+ * version}), start, goal, and impassable cells -- are coalesced, so the search
+ * is only run once no matter how many Entities asked for it.
+ * </p>
+ * <p>
+ * Each worker searches its own copy of the grid's costs (re-copied only when
+ * the grid changes), so searches on a shared grid don't have to wait on one
+ * another.
+ * </p>
+ * <p>
+ * Requests may also be answered from a {@link FlowField} -- see
+ * {@link #requestAlongFlowField(PathfindingGrid, Coord, Coord, int)
+ * requestAlongFlowField()}.
+ * </p>
+ * <p>
+ * Which {@link PathfindingMethod} answers ordinary requests is chosen by
+ * {@link #PREFERENCE_METHOD}. The {@link PathfindingMethod#HIERARCHICAL
+ * hierarchical} method falls back to a full search whenever it can't refine a
+ * path around the request's impassable cells.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class PathfindingService {
+	
+	private static final Logger LOG = Logger.getLogger(PathfindingService.class.getName());
+	
+	public static final String PREFERENCE_WORKERS = "pathfinding.workers";
+	public static final String PREFERENCE_METHOD = "pathfinding.method";
+	static {
+		Config.get().register(PREFERENCE_WORKERS, "Number of threads to run path-searches on",
+				Math.max(1, Runtime.getRuntime().availableProcessors() / 2), false, true);
+		Config.get().register(PREFERENCE_METHOD, "How to search for paths (DIJKSTRA or HIERARCHICAL)",
+				PathfindingMethod.DIJKSTRA.name(), false, true);
+	}
+	
+	private static PathfindingService __INSTANCE = null;
+	
+	/**
+	 * @return the singleton {@link PathfindingService} instance
+	 */
+	public static PathfindingService get() {
+		
+		if (__INSTANCE == null)
+			synchronized (PathfindingService.class) {
+				if (__INSTANCE == null) {
+					__INSTANCE = new PathfindingService();
+					Runtime.getRuntime().addShutdownHook(new Thread(() -> __INSTANCE.workers.shutdownNow()));
+				}
+			}
+		return __INSTANCE;
+	}
+	
+	private final ExecutorService workers;
+	private final PathfindingMethod method;
+	private final Map<Key, Request> requests = new HashMap<>();
+	
+	private final ThreadLocal<Searcher> searchers = ThreadLocal.withInitial(Searcher::new);
+	
+	private PathfindingService() {
+		
+		workers = Executors.newFixedThreadPool(Math.max(1, Config.get().getInt(PREFERENCE_WORKERS)),
+				new ThreadFactoryBuilder().setNameFormat("pathfinder-%d").setDaemon(true).build());
+		
+		PathfindingMethod method;
+		try {
+			method = PathfindingMethod.valueOf(Config.get().get(PREFERENCE_METHOD).trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			LOG.warning("Unrecognized pathfinding-method [" + Config.get().get(PREFERENCE_METHOD) + "] -- using "
+					+ PathfindingMethod.DIJKSTRA + " instead.");
+			method = PathfindingMethod.DIJKSTRA;
+		}
+		this.method = method;
+	}
+	
+	/**
+	 * @return the {@link PathfindingMethod} used to answer
+	 *         {@link #request(PathfindingGrid, Coord, Coord, int, GreasedRegion)
+	 *         requests}
+	 */
+	public PathfindingMethod getMethod() {
+		
+		return method;
+	}
+	
+	/**
+	 * Request a path (of at most {@code length} steps) across the given grid, from
+	 * {@code start} toward {@code goal}, treating the cells of {@code impassable}
+	 * as walls.
+	 * <p>
+	 * {@code impassable} is copied, so you're free to re-use it as soon as this
+	 * method returns.
+	 * </p>
+	 * 
+	 * @param grid
+	 * @param start
+	 * @param goal
+	 * @param length
+	 * @param impassable
+	 *            may be {@code null}
+	 * @return a {@link Ticket} by which you can follow (or
+	 *         {@link Ticket#cancel() cancel}) this request
+	 */
+	public Ticket request(PathfindingGrid grid, Coord start, Coord goal, int length, GreasedRegion impassable) {
+		
+		return submit(new Key(grid, grid.getVersion(), start, goal, length,
+				(impassable == null) ? null : new GreasedRegion(impassable), false));
+	}
+	
+	/**
+	 * Request a path (of at most {@code length} steps) across the given grid, from
+	 * {@code start} toward {@code goal}, read from the {@link FlowFieldCache
+	 * cached} {@link FlowField} toward that goal.
+	 * <p>
+	 * Use this when many Entities are headed for the same goal: they'll share a
+	 * single scan of the grid, rather than each searching for themselves. Unlike
+	 * {@link #request(PathfindingGrid, Coord, Coord, int, GreasedRegion)
+	 * request()}, no cells may be marked impassable beyond the grid's own walls.
+	 * </p>
+	 * 
+	 * @param grid
+	 * @param start
+	 * @param goal
+	 * @param length
+	 * @return a {@link Ticket} by which you can follow (or
+	 *         {@link Ticket#cancel() cancel}) this request
+	 */
+	public Ticket requestAlongFlowField(PathfindingGrid grid, Coord start, Coord goal, int length) {
+		
+		return submit(new Key(grid, grid.getVersion(), start, goal, length, null, true));
+	}
+	
+	private Ticket submit(Key key) {
+		
+		synchronized (this) {
+			Request request = requests.get(key);
+			if (request == null) {
+				request = new Request(key);
+				requests.put(key, request);
+				
+				final Request toRun = request;
+				workers.submit(() -> run(toRun));
+			}
+			
+			final Ticket ticket = new Ticket(request);
+			request.tickets.add(ticket);
+			return ticket;
+		}
+	}
+	
+	/**
+	 * @return the number of searches waiting for, or currently on, a worker
+	 */
+	public int getPendingCount() {
+		
+		synchronized (this) {
+			return requests.size();
+		}
+	}
+	
+	private void cancel(Ticket ticket) {
+		
+		synchronized (this) {
+			ticket.request.tickets.remove(ticket);
+			
+			//
+			// If nobody wants this search any longer, and it hasn't been started yet,
+			// the worker can skip it.
+			if (ticket.request.tickets.isEmpty() && !ticket.request.started)
+				requests.remove(ticket.request.key);
+		}
+	}
+	
+	private void run(Request request) {
+		
+		synchronized (this) {
+			if (request.tickets.isEmpty())
+				return;
+			request.started = true;
+		}
+		
+		List<Coord> path;
+		try {
+			if (request.key.flowField)
+				path = FlowFieldCache.get().get(request.key.grid, request.key.goal).getPath(request.key.start,
+						request.key.length);
+			else
+				path = searchers.get().search(request.key, method);
+		} catch (RuntimeException e) {
+			LOG.log(Level.WARNING, "Unexpected exception while pathfinding from " + request.key.start + " to "
+					+ request.key.goal + "!", e);
+			path = Collections.emptyList();
+		} catch (Error e) {
+			//
+			// Don't leave this request behind for later requests to coalesce with.
+			synchronized (this) {
+				requests.remove(request.key);
+			}
+			throw e;
+		}
+		
+		final List<Ticket> tickets;
+		synchronized (this) {
+			requests.remove(request.key);
+			tickets = new ArrayList<>(request.tickets);
+		}
+		
+		if (tickets.isEmpty())
+			return;
+		
+		final List<Coord> result = Collections.unmodifiableList(path);
+		final Runnable delivery = () -> {
+			for (Ticket t : tickets)
+				t.complete(result);
+		};
+		
+		final Engine engine = Context.getEngine();
+		final RunnableExecutingSystem res = (engine == null) ? null : engine.getSystem(RunnableExecutingSystem.class);
+		if (res != null)
+			res.submit(delivery);
+		else
+			delivery.run();
+	}
+	
+	/**
+	 * Follows a single {@link PathfindingService#request(PathfindingGrid, Coord,
+	 * Coord, int, GreasedRegion) request}. Its result is only ever filled in on the
+	 * {@link Engine}-thread.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public class Ticket {
+		
+		private final Request request;
+		private volatile List<Coord> path = null;
+		private volatile boolean cancelled = false;
+		
+		private Ticket(Request request) {
+			
+			this.request = request;
+		}
+		
+		/**
+		 * @return the goal this ticket was requested for
+		 */
+		public Coord getGoal() {
+			
+			return request.key.goal;
+		}
+		
+		/**
+		 * @return {@code true} if this ticket's path is ready
+		 */
+		public boolean isDone() {
+			
+			return path != null;
+		}
+		
+		/**
+		 * @return the path found (empty if none could be found), or {@code null} if
+		 *         the search isn't done yet
+		 */
+		public List<Coord> getPath() {
+			
+			return path;
+		}
+		
+		public boolean isCancelled() {
+			
+			return cancelled;
+		}
+		
+		/**
+		 * Signal that you're no longer interested in this ticket's path. If nobody
+		 * else wants the same path, its search is skipped (if it hasn't already
+		 * started).
+		 */
+		public void cancel() {
+			
+			if (cancelled)
+				return;
+			
+			cancelled = true;
+			PathfindingService.this.cancel(this);
+		}
+		
+		private void complete(List<Coord> path) {
+			
+			if (!cancelled)
+				this.path = path;
+		}
+	}
+	
+	private static class Request {
+		
+		private final Key key;
+		private final List<Ticket> tickets = new LinkedList<>();
+		private boolean started = false;
+		
+		public Request(Key key) {
+			
+			this.key = key;
+		}
+	}
+	
+	/**
+	 * Identifies a single path-search.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class Key {
+		
+		private final PathfindingGrid grid;
+		private final long gridVersion;
+		private final Coord start, goal;
+		private final int length;
+		private final GreasedRegion impassable;
+		private final boolean flowField;
+		private final int hashCode;
+		
+		public Key(PathfindingGrid grid, long gridVersion, Coord start, Coord goal, int length,
+				GreasedRegion impassable, boolean flowField) {
+			
+			this.grid = grid;
+			this.gridVersion = gridVersion;
+			this.start = start;
+			this.goal = goal;
+			this.length = length;
+			this.impassable = impassable;
+			this.flowField = flowField;
+			this.hashCode = Objects.hash(gridVersion, start, goal, length, impassable, flowField);
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			return hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return grid == other.grid && gridVersion == other.gridVersion && length == other.length
+					&& flowField == other.flowField && Objects.equals(start, other.start) && Objects.equals(goal, other.goal)
+					&& Objects.equals(impassable, other.impassable);
+		}
+	}
+	
+	/**
+	 * A worker's own copy of the grid it last searched.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class Searcher {
+		
+		private final IncrementalDijkstraMap pathfinder = new IncrementalDijkstraMap(Measurement.EUCLIDEAN,
+				RNG.get());
+		private PathfindingGrid grid = null;
+		private long version = -1;
+		
+		public List<Coord> search(Key key, PathfindingMethod method) {
+			
+			final PathfindingGrid grid = key.grid;
+			
+			if (method == PathfindingMethod.HIERARCHICAL) {
+				//
+				// The lock is only needed in case the hierarchy must first be built.
+				// Searching it is safe without.
+				final HierarchicalPathfinder hierarchy;
+				grid.getLock().lock();
+				try {
+					hierarchy = grid.getHierarchy();
+				} finally {
+					grid.getLock().unlock();
+				}
+				
+				final List<Coord> path = hierarchy.findPath(key.start, key.goal, key.length, key.impassable);
+				if (path != null)
+					return path;
+			}
+			
+			grid.getLock().lock();
+			try {
+				if (grid != this.grid || grid.getVersion() != version) {
+					pathfinder.copyCostsFrom(grid.getPathfinder());
+					this.grid = grid;
+					this.version = grid.getVersion();
+				}
+			} finally {
+				grid.getLock().unlock();
+			}
+			
+			//
+			// findPath() copies the impassable cells into a HashSet. Iterating over a
+			// GreasedRegion directly is very slow, so we hand it a flat List instead.
+			final List<Coord> impassable = (key.impassable == null) ? null : Arrays.asList(key.impassable.asCoords());
+			
+			return pathfinder.findPath(key.length, -1, impassable, null, key.start, key.goal);
+		}
+	}
+	
+	/**
+	 * How {@link PathfindingService} answers path-search requests.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public enum PathfindingMethod {
+		/**
+		 * Scan the whole grid with a {@link IncrementalDijkstraMap DijkstraMap}.
+		 */
+		DIJKSTRA,
+		/**
+		 * Search the grid's {@link HierarchicalPathfinder}, refining only as much of
+		 * the path as was asked for.
+		 */
+		HIERARCHICAL
+	}
+}
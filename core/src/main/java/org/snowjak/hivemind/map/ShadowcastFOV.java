@@ -0,0 +1,226 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.map;
+
+import squidpony.squidgrid.FOV;
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * Calculates FOV as a plain visible/not-visible set, working directly on
+ * {@link GreasedRegion}s -- an "opaque" region in, a "visible" region out.
+ * Unlike {@link FOV#reuseFOV(double[][], double[][], int, int, double)
+ * FOV.reuseFOV()}, no light-levels are calculated.
+ * <p>
+ * This is symmetric shadowcasting: if cell A can see cell B, then B can also
+ * see A. Slopes are held as exact fractions, so there is no floating-point
+ * error. Every cell lying strictly within the given radius of the origin (as a
+ * circle) is visible unless it is hidden by an opaque cell. Opaque cells are
+ * visible, but nothing can be seen through them. Cells outside the opaque
+ * region's bounds are treated as opaque.
+ * </p>
+ * <p>
+ * Instances hold per-calculation state, and so are not thread-safe -- use one
+ * per thread.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class ShadowcastFOV {
+	
+	/**
+	 * Cells whose visibility-resistance is at least this much are opaque.
+	 */
+	public static final double OPAQUE_RESISTANCE = 1d;
+	
+	private static final int NORTH = 0, SOUTH = 1, EAST = 2, WEST = 3;
+	
+	private long[] opaqueData;
+	private int width, height, ySections;
+	private int originX, originY, radius, radiusSquared;
+	private GreasedRegion visible;
+	private int visibleX, visibleY;
+	
+	/**
+	 * Calculate FOV from the given origin, adding every visible cell to
+	 * {@code visible}. ({@code visible} is not cleared first.)
+	 * 
+	 * @param opaque
+	 * @param originX
+	 * @param originY
+	 * @param radius
+	 * @param visible
+	 *            must be the same size as {@code opaque}
+	 * @throws IllegalArgumentException
+	 *             if {@code visible} is not the same size as {@code opaque}
+	 */
+	public void calculate(GreasedRegion opaque, int originX, int originY, int radius, GreasedRegion visible) {
+		
+		if (visible.width != opaque.width || visible.height != opaque.height)
+			throw new IllegalArgumentException("Cannot calculate FOV -- visible-region (" + visible.width + "x"
+					+ visible.height + ") is not the same size as opaque-region (" + opaque.width + "x"
+					+ opaque.height + ").");
+		
+		calculate(opaque, originX, originY, radius, visible, 0, 0);
+	}
+	
+	/**
+	 * Calculate FOV from the given origin, adding every visible cell to
+	 * {@code visible} -- which here is a window onto the map, whose {@code (0,0)}
+	 * corresponds to the map-location {@code (visibleX,visibleY)}. Visible cells
+	 * falling outside that window are dropped. ({@code visible} is not cleared
+	 * first.)
+	 * 
+	 * @param opaque
+	 * @param originX
+	 * @param originY
+	 * @param radius
+	 * @param visible
+	 * @param visibleX
+	 * @param visibleY
+	 */
+	public void calculate(GreasedRegion opaque, int originX, int originY, int radius, GreasedRegion visible,
+			int visibleX, int visibleY) {
+		
+		if (originX < 0 || originY < 0 || originX >= opaque.width || originY >= opaque.height || radius <= 0)
+			return;
+		
+		this.opaqueData = opaque.data;
+		this.width = opaque.width;
+		this.height = opaque.height;
+		this.ySections = (opaque.height + 63) >> 6;
+		this.originX = originX;
+		this.originY = originY;
+		this.radius = radius;
+		this.radiusSquared = radius * radius;
+		this.visible = visible;
+		this.visibleX = visibleX;
+		this.visibleY = visibleY;
+		
+		try {
+			reveal(originX, originY, 0, 0);
+			
+			for (int quadrant = 0; quadrant < 4; quadrant++)
+				scan(quadrant, 1, -1, 1, 1, 1);
+		} finally {
+			this.opaqueData = null;
+			this.visible = null;
+		}
+	}
+	
+	/**
+	 * Scan one row of the given quadrant, between the given start- and
+	 * end-slopes, and recurse into the following rows.
+	 * 
+	 * @param quadrant
+	 * @param depth
+	 * @param startNumerator
+	 * @param startDenominator
+	 * @param endNumerator
+	 * @param endDenominator
+	 */
+	private void scan(int quadrant, int depth, long startNumerator, long startDenominator, long endNumerator,
+			long endDenominator) {
+		
+		if (depth >= radius)
+			return;
+		
+		final int minColumn = roundTiesUp(depth * startNumerator, startDenominator);
+		final int maxColumn = roundTiesDown(depth * endNumerator, endDenominator);
+		
+		//
+		// -1 == no previous cell, 0 == previous cell was clear, 1 == previous cell
+		// was opaque
+		int previous = -1;
+		
+		for (int column = minColumn; column <= maxColumn; column++) {
+			
+			final int x = toX(quadrant, depth, column), y = toY(quadrant, depth, column);
+			final boolean opaque = isOpaque(x, y);
+			
+			if (opaque || (column * startDenominator >= depth * startNumerator
+					&& column * endDenominator <= depth * endNumerator))
+				reveal(x, y, depth, column);
+			
+			if (previous == 1 && !opaque) {
+				startNumerator = 2 * column - 1;
+				startDenominator = 2 * depth;
+			}
+			
+			if (previous == 0 && opaque)
+				scan(quadrant, depth + 1, startNumerator, startDenominator, 2 * column - 1, 2 * depth);
+			
+			previous = (opaque) ? 1 : 0;
+		}
+		
+		if (previous == 0)
+			scan(quadrant, depth + 1, startNumerator, startDenominator, endNumerator, endDenominator);
+	}
+	
+	private void reveal(int x, int y, int depth, int column) {
+		
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return;
+		if (depth * depth + column * column >= radiusSquared)
+			return;
+		visible.insert(x - visibleX, y - visibleY);
+	}
+	
+	private boolean isOpaque(int x, int y) {
+		
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return true;
+		return (opaqueData[x * ySections + (y >> 6)] & (1L << (y & 63))) != 0L;
+	}
+	
+	private int toX(int quadrant, int depth, int column) {
+		
+		switch (quadrant) {
+		case NORTH:
+		case SOUTH:
+			return originX + column;
+		case EAST:
+			return originX + depth;
+		case WEST:
+		default:
+			return originX - depth;
+		}
+	}
+	
+	private int toY(int quadrant, int depth, int column) {
+		
+		switch (quadrant) {
+		case NORTH:
+			return originY - depth;
+		case SOUTH:
+			return originY + depth;
+		case EAST:
+		case WEST:
+		default:
+			return originY + column;
+		}
+	}
+	
+	/**
+	 * @param numerator
+	 * @param denominator
+	 *            must be positive
+	 * @return {@code floor(numerator/denominator + 1/2)}
+	 */
+	private static int roundTiesUp(long numerator, long denominator) {
+		
+		return (int) Math.floorDiv(2 * numerator + denominator, 2 * denominator);
+	}
+	
+	/**
+	 * @param numerator
+	 * @param denominator
+	 *            must be positive
+	 * @return {@code ceil(numerator/denominator - 1/2)}
+	 */
+	private static int roundTiesDown(long numerator, long denominator) {
+		
+		return (int) -Math.floorDiv(denominator - 2 * numerator, 2 * denominator);
+	}
+}
@@ -3,6 +3,11 @@
  */
 package org.snowjak.hivemind.util;
 
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import org.snowjak.hivemind.util.lambda.IntBiConsumer;
+
 import squidpony.squidmath.Coord;
 import squidpony.squidmath.GreasedRegion;
 import squidpony.squidmath.IRNG;
@@ -364,6 +369,588 @@ public class ExtGreasedRegion extends GreasedRegion {
 		return values;
 	}
 	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, copy the corresponding value
+	 * from {@code src} into {@code dest}. Cells that are "off" are left untouched.
+	 * <p>
+	 * Both arrays are taken to be "flattened" maps of the same size as this
+	 * region, laid out in the same order as a {@code [x][y]} array -- i.e., cell
+	 * {@code (x,y)} is found at index {@code x * height + y}.
+	 * </p>
+	 * <p>
+	 * This works on this region's bit-words directly: empty words are skipped,
+	 * and runs of "on" cells are copied with {@link System#arraycopy}. This is
+	 * proportional to the "on" area, not the map's.
+	 * </p>
+	 * 
+	 * @param dest
+	 *            a flattened map that will be modified in place
+	 * @param src
+	 *            a flattened map that will not be modified
+	 * @throws IllegalArgumentException
+	 *             if either array is not the same size as this region
+	 */
+	public void maskedCopyInto(short[] dest, short[] src) {
+		
+		checkFlatSize(dest.length);
+		checkFlatSize(src.length);
+		forEachRun((x, from, to) -> System.arraycopy(src, x * height + from, dest, x * height + from, to - from));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, copy the corresponding value
+	 * from {@code src} into {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a flattened map that will be modified in place
+	 * @param src
+	 *            a flattened map that will not be modified
+	 * @throws IllegalArgumentException
+	 *             if either array is not the same size as this region
+	 * @see #maskedCopyInto(short[], short[])
+	 */
+	public void maskedCopyInto(float[] dest, float[] src) {
+		
+		checkFlatSize(dest.length);
+		checkFlatSize(src.length);
+		forEachRun((x, from, to) -> System.arraycopy(src, x * height + from, dest, x * height + from, to - from));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, copy the corresponding value
+	 * from {@code src} into {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a flattened map that will be modified in place
+	 * @param src
+	 *            a flattened map that will not be modified
+	 * @throws IllegalArgumentException
+	 *             if either array is not the same size as this region
+	 * @see #maskedCopyInto(short[], short[])
+	 */
+	public void maskedCopyInto(double[] dest, double[] src) {
+		
+		checkFlatSize(dest.length);
+		checkFlatSize(src.length);
+		forEachRun((x, from, to) -> System.arraycopy(src, x * height + from, dest, x * height + from, to - from));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, copy the corresponding value
+	 * from {@code src} into {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a flattened map that will be modified in place
+	 * @param src
+	 *            a flattened map that will not be modified
+	 * @throws IllegalArgumentException
+	 *             if either array is not the same size as this region
+	 * @see #maskedCopyInto(short[], short[])
+	 */
+	public void maskedCopyInto(char[] dest, char[] src) {
+		
+		checkFlatSize(dest.length);
+		checkFlatSize(src.length);
+		forEachRun((x, from, to) -> System.arraycopy(src, x * height + from, dest, x * height + from, to - from));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, copy the corresponding value
+	 * from {@code src} into {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a flattened map that will be modified in place
+	 * @param src
+	 *            a flattened map that will not be modified
+	 * @throws IllegalArgumentException
+	 *             if either array is not the same size as this region
+	 * @see #maskedCopyInto(short[], short[])
+	 */
+	public <T> void maskedCopyInto(T[] dest, T[] src) {
+		
+		checkFlatSize(dest.length);
+		checkFlatSize(src.length);
+		forEachRun((x, from, to) -> System.arraycopy(src, x * height + from, dest, x * height + from, to - from));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, write {@code value} into
+	 * {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a flattened map that will be modified in place
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not the same size as this region
+	 * @see #maskedCopyInto(short[], short[])
+	 */
+	public void maskedFill(short[] dest, short value) {
+		
+		checkFlatSize(dest.length);
+		forEachRun((x, from, to) -> Arrays.fill(dest, x * height + from, x * height + to, value));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, write {@code value} into
+	 * {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a flattened map that will be modified in place
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not the same size as this region
+	 * @see #maskedCopyInto(short[], short[])
+	 */
+	public void maskedFill(float[] dest, float value) {
+		
+		checkFlatSize(dest.length);
+		forEachRun((x, from, to) -> Arrays.fill(dest, x * height + from, x * height + to, value));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, write {@code value} into
+	 * {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a flattened map that will be modified in place
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not the same size as this region
+	 * @see #maskedCopyInto(short[], short[])
+	 */
+	public void maskedFill(double[] dest, double value) {
+		
+		checkFlatSize(dest.length);
+		forEachRun((x, from, to) -> Arrays.fill(dest, x * height + from, x * height + to, value));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, write {@code value} into
+	 * {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a flattened map that will be modified in place
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not the same size as this region
+	 * @see #maskedCopyInto(short[], short[])
+	 */
+	public void maskedFill(char[] dest, char value) {
+		
+		checkFlatSize(dest.length);
+		forEachRun((x, from, to) -> Arrays.fill(dest, x * height + from, x * height + to, value));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, write {@code value} into
+	 * {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a flattened map that will be modified in place
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not the same size as this region
+	 * @see #maskedCopyInto(short[], short[])
+	 */
+	public <T> void maskedFill(T[] dest, T value) {
+		
+		checkFlatSize(dest.length);
+		forEachRun((x, from, to) -> Arrays.fill(dest, x * height + from, x * height + to, value));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, copy the corresponding value
+	 * from {@code src} into {@code dest}. Cells that are "off" are left untouched.
+	 * <p>
+	 * Unlike {@link #inverseMask(short[][], short[][])}, this modifies
+	 * {@code dest} in place, and works on this region's bit-words directly:
+	 * empty words are skipped, and runs of "on" cells are copied with
+	 * {@link System#arraycopy}.
+	 * </p>
+	 * 
+	 * @param dest
+	 *            a 2D array, the same size as this region, that will be modified
+	 *            in place
+	 * @param src
+	 *            a 2D array, the same size as this region, that will not be
+	 *            modified
+	 * @throws IllegalArgumentException
+	 *             if either array is not the same size as this region
+	 */
+	public void maskedCopyInto(short[][] dest, short[][] src) {
+		
+		checkSize(dest);
+		checkSize(src);
+		forEachRun((x, from, to) -> System.arraycopy(src[x], from, dest[x], from, to - from));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, copy the corresponding value
+	 * from {@code src} into {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a 2D array that will be modified in place
+	 * @param src
+	 *            a 2D array that will not be modified
+	 * @throws IllegalArgumentException
+	 *             if either array is not the same size as this region
+	 * @see #maskedCopyInto(short[][], short[][])
+	 */
+	public void maskedCopyInto(float[][] dest, float[][] src) {
+		
+		checkSize(dest);
+		checkSize(src);
+		forEachRun((x, from, to) -> System.arraycopy(src[x], from, dest[x], from, to - from));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, copy the corresponding value
+	 * from {@code src} into {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a 2D array that will be modified in place
+	 * @param src
+	 *            a 2D array that will not be modified
+	 * @throws IllegalArgumentException
+	 *             if either array is not the same size as this region
+	 * @see #maskedCopyInto(short[][], short[][])
+	 */
+	public void maskedCopyInto(double[][] dest, double[][] src) {
+		
+		checkSize(dest);
+		checkSize(src);
+		forEachRun((x, from, to) -> System.arraycopy(src[x], from, dest[x], from, to - from));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, copy the corresponding value
+	 * from {@code src} into {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a 2D array that will be modified in place
+	 * @param src
+	 *            a 2D array that will not be modified
+	 * @throws IllegalArgumentException
+	 *             if either array is not the same size as this region
+	 * @see #maskedCopyInto(short[][], short[][])
+	 */
+	public void maskedCopyInto(char[][] dest, char[][] src) {
+		
+		checkSize(dest);
+		checkSize(src);
+		forEachRun((x, from, to) -> System.arraycopy(src[x], from, dest[x], from, to - from));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, copy the corresponding value
+	 * from {@code src} into {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a 2D array that will be modified in place
+	 * @param src
+	 *            a 2D array that will not be modified
+	 * @throws IllegalArgumentException
+	 *             if either array is not the same size as this region
+	 * @see #maskedCopyInto(short[][], short[][])
+	 */
+	public <T> void maskedCopyInto(T[][] dest, T[][] src) {
+		
+		checkSize(dest);
+		checkSize(src);
+		forEachRun((x, from, to) -> System.arraycopy(src[x], from, dest[x], from, to - from));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, write {@code value} into
+	 * {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a 2D array that will be modified in place
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not the same size as this region
+	 * @see #maskedCopyInto(short[][], short[][])
+	 */
+	public void maskedFill(short[][] dest, short value) {
+		
+		checkSize(dest);
+		forEachRun((x, from, to) -> Arrays.fill(dest[x], from, to, value));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, write {@code value} into
+	 * {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a 2D array that will be modified in place
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not the same size as this region
+	 * @see #maskedCopyInto(short[][], short[][])
+	 */
+	public void maskedFill(float[][] dest, float value) {
+		
+		checkSize(dest);
+		forEachRun((x, from, to) -> Arrays.fill(dest[x], from, to, value));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, write {@code value} into
+	 * {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a 2D array that will be modified in place
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not the same size as this region
+	 * @see #maskedCopyInto(short[][], short[][])
+	 */
+	public void maskedFill(double[][] dest, double value) {
+		
+		checkSize(dest);
+		forEachRun((x, from, to) -> Arrays.fill(dest[x], from, to, value));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, write {@code value} into
+	 * {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a 2D array that will be modified in place
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not the same size as this region
+	 * @see #maskedCopyInto(short[][], short[][])
+	 */
+	public void maskedFill(char[][] dest, char value) {
+		
+		checkSize(dest);
+		forEachRun((x, from, to) -> Arrays.fill(dest[x], from, to, value));
+	}
+	
+	/**
+	 * Where a cell is "on" in this GreasedRegion, write {@code value} into
+	 * {@code dest}. Cells that are "off" are left untouched.
+	 * 
+	 * @param dest
+	 *            a 2D array that will be modified in place
+	 * @param value
+	 * @throws IllegalArgumentException
+	 *             if {@code dest} is not the same size as this region
+	 * @see #maskedCopyInto(short[][], short[][])
+	 */
+	public <T> void maskedFill(T[][] dest, T value) {
+		
+		checkSize(dest);
+		forEachRun((x, from, to) -> Arrays.fill(dest[x], from, to, value));
+	}
+	
+	/**
+	 * {@link GreasedRegion#isEmpty()} gets its answer backwards whenever it has
+	 * cached its cell-counts (e.g., after {@link #size()} or {@link #fill(boolean)
+	 * fill(true)}). This always checks the words directly.
+	 */
+	@Override
+	public boolean isEmpty() {
+		
+		for (int i = 0; i < data.length; i++)
+			if (data[i] != 0L)
+				return false;
+		return true;
+	}
+	
+	/**
+	 * Visit every "on" cell in this region, column by column. All-"off" words are
+	 * skipped outright, so this is proportional to the "on" area.
+	 * 
+	 * @param visitor
+	 *            receives each "on" cell's {@code (x,y)}
+	 */
+	public void forEachCell(IntBiConsumer visitor) {
+		
+		forEachCell(this, visitor);
+	}
+	
+	/**
+	 * Visit every "on" cell in the given {@link GreasedRegion}, column by column.
+	 * All-"off" words are skipped outright, so this is proportional to the "on"
+	 * area.
+	 * 
+	 * @param region
+	 * @param visitor
+	 *            receives each "on" cell's {@code (x,y)}
+	 */
+	public static void forEachCell(GreasedRegion region, IntBiConsumer visitor) {
+		
+		final int ySections = (region.height + 63) >> 6;
+		for (int x = 0; x < region.width; x++) {
+			for (int s = 0; s < ySections; s++) {
+				long bits = region.data[x * ySections + s];
+				while (bits != 0) {
+					visitor.accept(x, (s << 6) + Long.numberOfTrailingZeros(bits));
+					bits &= bits - 1;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Visit every cell that is "on" in both of the given {@link GreasedRegion
+	 * regions}, column by column. The regions need not be the same size; the two
+	 * are intersected a word at a time, and neither is modified.
+	 * 
+	 * @param region
+	 * @param other
+	 * @param visitor
+	 *            receives each "on" cell's {@code (x,y)}
+	 */
+	public static void forEachCell(GreasedRegion region, GreasedRegion other, IntBiConsumer visitor) {
+		
+		final int ySections = (region.height + 63) >> 6, otherYSections = (other.height + 63) >> 6;
+		final int width = Math.min(region.width, other.width), sections = Math.min(ySections, otherYSections);
+		for (int x = 0; x < width; x++) {
+			for (int s = 0; s < sections; s++) {
+				long bits = region.data[x * ySections + s] & other.data[x * otherYSections + s];
+				while (bits != 0) {
+					visitor.accept(x, (s << 6) + Long.numberOfTrailingZeros(bits));
+					bits &= bits - 1;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Determine if any cell within the given rectangle is "on". The rectangle is
+	 * clipped to this region; each column is tested a word at a time.
+	 * 
+	 * @param startX
+	 * @param startY
+	 * @param rectangleWidth
+	 * @param rectangleHeight
+	 * @return
+	 */
+	public boolean intersectsRectangle(int startX, int startY, int rectangleWidth, int rectangleHeight) {
+		
+		final int fromX = Math.max(0, startX), toX = Math.min(width, startX + rectangleWidth);
+		final int fromY = Math.max(0, startY), toY = Math.min(height, startY + rectangleHeight);
+		if (fromX >= toX || fromY >= toY)
+			return false;
+		
+		final int ySections = getYSections();
+		final int fromSection = fromY >> 6, toSection = (toY - 1) >> 6;
+		for (int x = fromX; x < toX; x++)
+			for (int s = fromSection; s <= toSection; s++) {
+				long mask = -1L;
+				if (s == fromSection)
+					mask &= -1L << (fromY & 63);
+				if (s == toSection && (toY & 63) != 0)
+					mask &= (1L << (toY & 63)) - 1L;
+				if ((data[x * ySections + s] & mask) != 0L)
+					return true;
+			}
+		return false;
+	}
+	
+	/**
+	 * Insert every "on" cell of {@code window} into this region, treating
+	 * {@code window}'s {@code (0,0)} as this region's {@code (x,y)}. Cells falling
+	 * outside this region are dropped.
+	 * <p>
+	 * Unlike {@link GreasedRegion#insert(int, int, GreasedRegion)}, this works
+	 * whatever the two regions' sizes, and allocates nothing: {@code window}'s
+	 * words are shifted directly into place.
+	 * </p>
+	 * 
+	 * @param x
+	 * @param y
+	 * @param window
+	 * @return this region, for chaining
+	 */
+	public ExtGreasedRegion insertWindow(int x, int y, GreasedRegion window) {
+		
+		final int ySections = getYSections(), windowYSections = (window.height + 63) >> 6;
+		final long endMask = ((height & 63) == 0) ? -1L : (1L << (height & 63)) - 1L;
+		final int fromI = Math.max(0, -x), toI = Math.min(window.width, width - x);
+		
+		int anyX = -1, anyY = -1;
+		for (int i = fromI; i < toI; i++) {
+			final int column = (x + i) * ySections;
+			for (int s = 0; s < windowYSections; s++) {
+				final long bits = window.data[i * windowYSections + s];
+				if (bits == 0L)
+					continue;
+				
+				final int bit = y + (s << 6), section = bit >> 6, shift = bit & 63;
+				for (int t = section; t <= section + 1; t++) {
+					if (t < 0 || t >= ySections || (t > section && shift == 0))
+						continue;
+					
+					long word = (t == section) ? bits << shift : bits >>> (64 - shift);
+					if (t == ySections - 1)
+						word &= endMask;
+					if (word == 0L)
+						continue;
+					
+					data[column + t] |= word;
+					anyX = x + i;
+					anyY = (t << 6) + Long.numberOfTrailingZeros(word);
+				}
+			}
+		}
+		
+		//
+		// GreasedRegion caches its cell-counts, and only its own methods can
+		// invalidate that cache. Re-inserting any one of our new cells will do it.
+		if (anyX >= 0)
+			insert(anyX, anyY);
+		
+		return this;
+	}
+	
+	/**
+	 * Visit every run of consecutive "on" cells in this region, column by column.
+	 * All-"off" words are skipped outright.
+	 * 
+	 * @param visitor
+	 */
+	private void forEachRun(RunVisitor visitor) {
+		
+		final int ySections = getYSections();
+		for (int x = 0; x < width; x++) {
+			for (int s = 0; s < ySections; s++) {
+				long bits = data[x * ySections + s];
+				while (bits != 0) {
+					final int start = Long.numberOfTrailingZeros(bits);
+					final int run = Long.numberOfTrailingZeros(~(bits >>> start));
+					
+					final int from = (s << 6) + start;
+					visitor.visit(x, from, from + run);
+					
+					bits = (run == 64) ? 0L : bits & ~(((1L << run) - 1L) << start);
+				}
+			}
+		}
+	}
+	
+	private void checkFlatSize(int length) {
+		
+		if (length != width * height)
+			throw new IllegalArgumentException("Cannot mask -- array-size (" + length + ") does not match region-size ("
+					+ width + "x" + height + ").");
+	}
+	
+	private void checkSize(Object[] array) {
+		
+		if (array.length != width)
+			throw new IllegalArgumentException("Cannot mask -- array-width (" + array.length
+					+ ") does not match region-width (" + width + ").");
+		for (int x = 0; x < array.length; x++)
+			if (Array.getLength(array[x]) != height)
+				throw new IllegalArgumentException("Cannot mask -- array-height at x=" + x + " ("
+						+ Array.getLength(array[x]) + ") does not match region-height (" + height
+						+ ").");
+	}
+	
 	/**
 	 * Required because {@code ySections} is a private field.
 	 * 
@@ -373,4 +960,17 @@ public class ExtGreasedRegion extends GreasedRegion {
 		
 		return (height + 63) >> 6;
 	}
+	
+	/**
+	 * Receives a run of consecutive "on" cells, {@code [from, to)}, from column
+	 * {@code x}.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	@FunctionalInterface
+	private interface RunVisitor {
+		
+		public void visit(int x, int from, int to);
+	}
 }
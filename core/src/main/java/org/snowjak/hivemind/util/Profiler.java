@@ -35,6 +35,11 @@ import com.google.common.base.Strings;
  * Profiler.get().report();
  * </pre>
  * </p>
+ * <p>
+ * A Profiler can also associate labels with counters -- e.g., cache-hits
+ * ({@link #count(String, long)}), or memory in use ({@link #gauge(String,
+ * long)}).
+ * </p>
  * 
  * @author snowjak88
  *
@@ -44,6 +49,7 @@ public class Profiler {
 	private static Profiler __INSTANCE = null;
 	
 	private final ObjectMap<String, Duration> record = new ObjectMap<>();
+	private final ObjectMap<String, Long> counters = new ObjectMap<>();
 	
 	private final BlockingQueue<ProfilerTimer> timerCache = new LinkedBlockingQueue<>();
 	
@@ -95,6 +101,33 @@ public class Profiler {
 		}
 	}
 	
+	/**
+	 * Add the given amount to the counter associated with the given label.
+	 * 
+	 * @param label
+	 * @param amount
+	 */
+	public void count(String label, long amount) {
+		
+		synchronized (this) {
+			counters.put(label, counters.get(label, 0L) + amount);
+		}
+	}
+	
+	/**
+	 * Set the counter associated with the given label to the given value,
+	 * replacing whatever it held before.
+	 * 
+	 * @param label
+	 * @param value
+	 */
+	public void gauge(String label, long value) {
+		
+		synchronized (this) {
+			counters.put(label, value);
+		}
+	}
+	
 	/**
 	 * Log all recorded labels and their durations to standard output.
 	 */
@@ -140,6 +173,26 @@ public class Profiler {
 					System.out.printf("%2.4f", (double) currentMillis / (double) totalMillis * 100.0);
 					System.out.println("%)");
 				}
+			
+			if (!counters.isEmpty()) {
+				
+				final List<String> counterLabels = new LinkedList<>();
+				this.counters.keys().forEach(counterLabels::add);
+				counterLabels.sort(String::compareTo);
+				
+				int maxCounterLabelLength = Integer.MIN_VALUE;
+				for (String label : counterLabels)
+					maxCounterLabelLength = Math.max(maxCounterLabelLength, label.length());
+				
+				System.out.println();
+				for (String label : counterLabels) {
+					System.out.print("   [");
+					System.out.print(label);
+					System.out.print("]");
+					System.out.print(Strings.repeat(" ", maxCounterLabelLength - label.length() + 3));
+					System.out.println(counters.get(label));
+				}
+			}
 			System.out.println();
 			System.out.println("-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-");
 		}
@@ -3,18 +3,60 @@
  */
 package org.snowjak.hivemind.util;
 
-import java.util.EnumMap;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+
 import squidpony.squidmath.Coord;
 import squidpony.squidmath.GreasedRegion;
-import squidpony.squidmath.OrderedMap;
 import squidpony.squidmath.OrderedSet;
 
 /**
  * GameMap which associates {@link Coord locations} with potentially-multiple
  * objects.
+ * <p>
+ * Each value held here is given an integer "handle". The values at each
+ * location are kept as a circular, doubly-linked list of handles, threaded
+ * through flat {@code int[]} arrays; each location's list is found through a
+ * grid of {@value #CHUNK_SIZE}x{@value #CHUNK_SIZE} head-index chunks, which are
+ * only allocated as values arrive in them. So nothing is hashed to look up a
+ * location, and nothing is allocated for locations which have never held a
+ * value. Locations with negative coordinates can't be held in the grid, and are
+ * kept to one side.
+ * </p>
+ * <p>
+ * An occupancy {@link GreasedRegion} marks every location that holds at least
+ * one value, so region-queries only ever touch occupied locations.
+ * </p>
+ * <p>
+ * {@link #getAt(Coord) getAt()} and {@link #getWithin(GreasedRegion)
+ * getWithin()} return a new set each time. For hot loops, prefer the
+ * {@link #forEachWithin(GreasedRegion, Consumer) forEach}-,
+ * {@link #countWithin(GreasedRegion) count}-, and
+ * {@link #collectWithin(GreasedRegion, Collection) collect}-variants, which
+ * allocate nothing of their own.
+ * </p>
+ * <p>
+ * Every change is also appended to a change-journal, from which any number of
+ * consumers can each {@link #readChanges(JournalCursor, ChangeVisitor) read}
+ * "everything since I last looked" through their own {@link JournalCursor}.
+ * The journal is a ring-buffer, compacted as the slowest cursor advances; while
+ * no cursors are open, nothing is journalled at all.
+ * </p>
+ * <p>
+ * Readers share a read-lock, so queries from different threads don't serialize
+ * on each other -- only on writes. Better still, a map which is written only
+ * from the engine-thread can {@link #publish() publish} a read-only
+ * {@link #snapshot() snapshot} of itself once a tick, which other threads can
+ * {@link #getPublished() query} without taking any lock at all. Snapshots are
+ * cheap: head-index chunks are copy-on-write, as in {@link org.snowjak.hivemind.map.GameMap GameMap}.
+ * </p>
  * 
  * @author snowjak88
  * @param <T>
@@ -22,11 +64,234 @@ import squidpony.squidmath.OrderedSet;
  */
 public class SpatialMap<T> {
 	
-	private final OrderedMap<Coord, OrderedSet<T>> coordToObjects = new OrderedMap<>();
-	private final OrderedMap<T, Coord> objectToCoord = new OrderedMap<>();
+	/**
+	 * The head-index grid is allocated in chunks {@code CHUNK_SIZE} locations on a
+	 * side.
+	 */
+	public static final int CHUNK_SIZE = 64;
+	private static final int CHUNK_SHIFT = 6, CHUNK_MASK = CHUNK_SIZE - 1, CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+	
+	private static final int NONE = -1;
+	
+	/**
+	 * Supplies copy-on-write epochs. A head-index chunk whose epoch matches its
+	 * SpatialMap's current epoch is owned outright by that SpatialMap; otherwise,
+	 * it may be shared with a snapshot, and must be copied before it is written.
+	 */
+	private static final AtomicLong EPOCHS = new AtomicLong();
+	
+	/**
+	 * Reentrant, because listeners (and {@link #set(Coord, Object)} itself) may
+	 * call back into a map while holding its write-lock.
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final boolean readOnly;
+	
+	private long epoch = EPOCHS.incrementAndGet();
+	private volatile long version = 0;
+	private volatile SpatialMap<T> published = null;
+	
+	private final MutableObjectIntMap<T> handles = new ObjectIntHashMap<>();
+	
+	private Object[] handleValues = new Object[16];
+	private Coord[] handleLocations = new Coord[16];
+	private int[] nextInCell = new int[16], prevInCell = new int[16];
+	private int handleCount = 0, freeHandles = NONE;
+	
+	private int chunksWide = 0, chunksHigh = 0;
+	private int[][] headChunks = new int[0][];
+	private long[] chunkEpochs = new long[0];
+	private final MutableObjectIntMap<Coord> outsideHeads = new ObjectIntHashMap<>();
+	
+	/**
+	 * The change-journal holds changes {@code [journalStart, journalEnd)}, by
+	 * sequence-number, in a ring-buffer (whose capacity is always a power of 2).
+	 */
+	private SpatialOperation[] journalOperations = new SpatialOperation[64];
+	private Object[] journalValues = new Object[64];
+	private Coord[] journalFrom = new Coord[64], journalTo = new Coord[64];
+	private long journalStart = 0, journalEnd = 0;
+	private final OrderedSet<JournalCursor> cursors = new OrderedSet<>();
+	
+	private final OrderedSet<LocationListener<T>> listeners = new OrderedSet<>();
+	
+	/**
+	 * Those locations which hold at least one value. Grown as needed; locations
+	 * with negative coordinates can't be held in a {@link GreasedRegion}, and so
+	 * are never marked here.
+	 */
+	private ExtGreasedRegion occupied = new ExtGreasedRegion(64, 64);
+	
+	/**
+	 * Construct a new (empty) SpatialMap.
+	 */
+	public SpatialMap() {
+		
+		this.readOnly = false;
+	}
+	
+	/**
+	 * Construct a new, read-only copy of the given SpatialMap. It shares
+	 * {@code toCopy}'s head-index chunks until {@code toCopy} next writes to them,
+	 * but doesn't share its change-journal, cursors, or listeners. Note that this
+	 * constructor will briefly take {@code toCopy}'s write-lock.
+	 * 
+	 * @param toCopy
+	 * @see #snapshot()
+	 */
+	protected SpatialMap(SpatialMap<T> toCopy) {
+		
+		this.readOnly = true;
+		
+		toCopy.lockWrite();
+		try {
+			//
+			// From here on, every chunk we share is copy-on-write for toCopy.
+			toCopy.epoch = EPOCHS.incrementAndGet();
+			
+			this.version = toCopy.version;
+			
+			this.handles.putAll(toCopy.handles);
+			this.handleValues = Arrays.copyOf(toCopy.handleValues, toCopy.handleCount);
+			this.handleLocations = Arrays.copyOf(toCopy.handleLocations, toCopy.handleCount);
+			this.nextInCell = Arrays.copyOf(toCopy.nextInCell, toCopy.handleCount);
+			this.prevInCell = Arrays.copyOf(toCopy.prevInCell, toCopy.handleCount);
+			this.handleCount = toCopy.handleCount;
+			this.freeHandles = NONE;
+			
+			this.chunksWide = toCopy.chunksWide;
+			this.chunksHigh = toCopy.chunksHigh;
+			this.headChunks = toCopy.headChunks.clone();
+			this.chunkEpochs = new long[toCopy.chunkEpochs.length];
+			this.outsideHeads.putAll(toCopy.outsideHeads);
+			
+			this.occupied = new ExtGreasedRegion(toCopy.occupied);
+		} finally {
+			toCopy.unlockWrite();
+		}
+	}
+	
+	/**
+	 * Take a read-only snapshot of this SpatialMap. This is cheap, as the snapshot
+	 * shares this map's head-index chunks until this map next writes to them. A
+	 * snapshot may be queried from any thread without locking.
+	 * <p>
+	 * Attempting to modify the returned SpatialMap will result in an
+	 * {@link UnsupportedOperationException}.
+	 * </p>
+	 * 
+	 * @return
+	 * @see #publish()
+	 */
+	public SpatialMap<T> snapshot() {
+		
+		if (readOnly)
+			return this;
+		
+		return new SpatialMap<>(this);
+	}
+	
+	/**
+	 * Publish a fresh {@link #snapshot() snapshot} of this map for
+	 * {@link #getPublished()} to return -- but only if someone has asked for one,
+	 * and only if this map has changed since the last. Intended to be called by
+	 * the map's single writer (i.e., the engine-thread) at a point where the map
+	 * is consistent, e.g., at the start of each tick.
+	 */
+	public void publish() {
+		
+		if (readOnly)
+			return;
+		
+		final SpatialMap<T> last = published;
+		if (last != null && last.version != version)
+			published = snapshot();
+	}
+	
+	/**
+	 * Get this map's last-{@link #publish() published} snapshot (publishing one
+	 * now, if none has been yet). This is what other threads should query: it
+	 * never changes under them, and querying it never contends with the
+	 * engine-thread. It may be up to one {@link #publish() publication} out of
+	 * date.
+	 * 
+	 * @return
+	 */
+	public SpatialMap<T> getPublished() {
+		
+		if (readOnly)
+			return this;
+		
+		SpatialMap<T> last = published;
+		if (last == null) {
+			last = snapshot();
+			published = last;
+		}
+		return last;
+	}
+	
+	/**
+	 * @return {@code true} if this SpatialMap is a {@link #snapshot() snapshot},
+	 *         and so cannot be modified
+	 */
+	public boolean isReadOnly() {
+		
+		return readOnly;
+	}
+	
+	/**
+	 * Get this map's version. This increases every time the map's contents
+	 * change, and is carried by any {@link #snapshot() snapshot} taken of this
+	 * map.
+	 * 
+	 * @return
+	 */
+	public long getVersion() {
+		
+		return version;
+	}
+	
+	/**
+	 * Register a {@link LocationListener}, to be notified whenever a value is
+	 * added, moved, or removed.
+	 * <p>
+	 * Unlike the {@link #readChanges(JournalCursor, ChangeVisitor) change-journal},
+	 * which is read at the consumer's leisure, a LocationListener is told of each
+	 * change as it happens.
+	 * </p>
+	 * 
+	 * @param listener
+	 */
+	public void addLocationListener(LocationListener<T> listener) {
+		
+		lockWrite();
+		try {
+			listeners.add(listener);
+		} finally {
+			unlockWrite();
+		}
+	}
+	
+	/**
+	 * Un-register a {@link LocationListener}.
+	 * 
+	 * @param listener
+	 */
+	public void removeLocationListener(LocationListener<T> listener) {
+		
+		lockWrite();
+		try {
+			listeners.remove(listener);
+		} finally {
+			unlockWrite();
+		}
+	}
 	
-	private final EnumMap<SpatialOperation, OrderedSet<T>> recentUpdates = new EnumMap<>(SpatialOperation.class);
-	private final OrderedSet<T> recentlyUpdated = new OrderedSet<>();
+	private void fireLocationChanged(T value, Coord from, Coord to) {
+		
+		for (int i = 0; i < listeners.size(); i++)
+			listeners.getAt(i).locationChanged(value, from, to);
+	}
 	
 	/**
 	 * Get the set of objects held within the given {@link GreasedRegion region},
@@ -37,14 +302,7 @@ public class SpatialMap<T> {
 	 */
 	public OrderedSet<T> getWithin(GreasedRegion region, Predicate<T> predicate) {
 		
-		synchronized (this) {
-			final Coord[] coords = region.asCoords();
-			final OrderedSet<T> result = new OrderedSet<>();
-			for (int i = 0; i < coords.length; i++)
-				result.addAll(getAt(coords[i], predicate));
-			
-			return result;
-		}
+		return collectWithin(region, predicate, new OrderedSet<>());
 	}
 	
 	/**
@@ -55,13 +313,149 @@ public class SpatialMap<T> {
 	 */
 	public OrderedSet<T> getWithin(GreasedRegion region) {
 		
-		synchronized (this) {
-			final Coord[] coords = region.asCoords();
-			final OrderedSet<T> result = new OrderedSet<>();
-			for (int i = 0; i < coords.length; i++)
-				result.addAll(getAt(coords[i]));
-			
-			return result;
+		return collectWithin(region, new OrderedSet<>());
+	}
+	
+	/**
+	 * Add every object held within the given {@link GreasedRegion region}, that
+	 * also satisfies the given {@link Predicate predicate}, to the given
+	 * collection.
+	 * 
+	 * @param region
+	 * @param predicate
+	 * @param into
+	 * @return {@code into}
+	 */
+	public <C extends Collection<? super T>> C collectWithin(GreasedRegion region, Predicate<T> predicate, C into) {
+		
+		lockRead();
+		try {
+			visitWithin(region, predicate, null, into);
+			return into;
+		} finally {
+			unlockRead();
+		}
+	}
+	
+	/**
+	 * Add every object held within the given {@link GreasedRegion region} to the
+	 * given collection.
+	 * 
+	 * @param region
+	 * @param into
+	 * @return {@code into}
+	 */
+	public <C extends Collection<? super T>> C collectWithin(GreasedRegion region, C into) {
+		
+		return collectWithin(region, null, into);
+	}
+	
+	/**
+	 * Give every object held within the given {@link GreasedRegion region}, that
+	 * also satisfies the given {@link Predicate predicate}, to the given
+	 * {@link Consumer}.
+	 * <p>
+	 * The consumer is called while holding this map's read-lock, and so must not
+	 * modify it.
+	 * </p>
+	 * 
+	 * @param region
+	 * @param predicate
+	 * @param consumer
+	 */
+	public void forEachWithin(GreasedRegion region, Predicate<T> predicate, Consumer<T> consumer) {
+		
+		lockRead();
+		try {
+			visitWithin(region, predicate, consumer, null);
+		} finally {
+			unlockRead();
+		}
+	}
+	
+	/**
+	 * Give every object held within the given {@link GreasedRegion region} to the
+	 * given {@link Consumer}.
+	 * <p>
+	 * The consumer is called while holding this map's read-lock, and so must not
+	 * modify it.
+	 * </p>
+	 * 
+	 * @param region
+	 * @param consumer
+	 */
+	public void forEachWithin(GreasedRegion region, Consumer<T> consumer) {
+		
+		forEachWithin(region, null, consumer);
+	}
+	
+	/**
+	 * Count the objects held within the given {@link GreasedRegion region}, that
+	 * also satisfy the given {@link Predicate predicate}.
+	 * 
+	 * @param region
+	 * @param predicate
+	 * @return
+	 */
+	public int countWithin(GreasedRegion region, Predicate<T> predicate) {
+		
+		lockRead();
+		try {
+			return visitWithin(region, predicate, null, null);
+		} finally {
+			unlockRead();
+		}
+	}
+	
+	/**
+	 * Count the objects held within the given {@link GreasedRegion region}.
+	 * 
+	 * @param region
+	 * @return
+	 */
+	public int countWithin(GreasedRegion region) {
+		
+		return countWithin(region, null);
+	}
+	
+	/**
+	 * Bring this map up-to-date with every value that {@code source} holds within
+	 * the given {@link GreasedRegion region} -- i.e., add each such value here, or
+	 * move it to its location in {@code source}. Values which this map holds
+	 * within the region, but {@code source} doesn't, are left alone.
+	 * <p>
+	 * Only those of {@code source}'s locations which are both occupied and within
+	 * the region are visited, and all changes are applied while holding both maps'
+	 * locks -- {@code source}'s read-lock first. (So you shouldn't sync two maps
+	 * from each other at the same time.) If {@code source} is a
+	 * {@link #snapshot() snapshot}, it isn't locked at all.
+	 * </p>
+	 * 
+	 * @param source
+	 * @param region
+	 */
+	public void syncWithin(SpatialMap<T> source, GreasedRegion region) {
+		
+		if (source == this)
+			return;
+		
+		source.lockRead();
+		try {
+			lockWrite();
+			try {
+				ExtGreasedRegion.forEachCell(source.occupied, region, (x, y) -> {
+					final int head = source.headAt(x, y);
+					int h = head;
+					do {
+						set(source.handleLocations[h], source.valueOf(h));
+						h = source.nextInCell[h];
+					} while (h != head);
+				});
+			} finally {
+				unlockWrite();
+			}
+		} finally {
+			source.unlockRead();
 		}
 	}
 	
@@ -75,28 +469,82 @@ public class SpatialMap<T> {
 	 */
 	public OrderedSet<T> getAt(Coord location, Predicate<T> predicate) {
 		
-		synchronized (this) {
-			@SuppressWarnings("unchecked")
-			final OrderedSet<T> values = (OrderedSet<T>) getAt(location).clone();
-			
-			final Iterator<T> iterator = values.iterator();
-			while (iterator.hasNext())
-				if (!predicate.test(iterator.next()))
-					iterator.remove();
-			return values;
-		}
+		return collectAt(location, predicate, new OrderedSet<>());
 	}
 	
 	/**
-	 * Get the set of objects held at the given {@link Coord location}.
+	 * Get the set of objects held at the given {@link Coord location}. The
+	 * returned set is a copy, and may be freely modified.
 	 * 
 	 * @param location
 	 * @return
 	 */
 	public OrderedSet<T> getAt(Coord location) {
 		
-		synchronized (this) {
-			return coordToObjects.computeIfAbsent(location, x -> new OrderedSet<>());
+		return collectAt(location, null, new OrderedSet<>());
+	}
+	
+	/**
+	 * Add every object held at the given {@link Coord location}, that also
+	 * satisfies the given {@link Predicate predicate}, to the given collection.
+	 * 
+	 * @param location
+	 * @param predicate
+	 *            may be {@code null}, to accept every object
+	 * @param into
+	 * @return {@code into}
+	 */
+	public <C extends Collection<? super T>> C collectAt(Coord location, Predicate<T> predicate, C into) {
+		
+		lockRead();
+		try {
+			visitAt(headAt(location.x, location.y), predicate, null, into);
+			return into;
+		} finally {
+			unlockRead();
+		}
+	}
+	
+	/**
+	 * Give every object held at the given {@link Coord location}, that also
+	 * satisfies the given {@link Predicate predicate}, to the given
+	 * {@link Consumer}.
+	 * <p>
+	 * The consumer is called while holding this map's read-lock, and so must not
+	 * modify it.
+	 * </p>
+	 * 
+	 * @param location
+	 * @param predicate
+	 *            may be {@code null}, to accept every object
+	 * @param consumer
+	 */
+	public void forEachAt(Coord location, Predicate<T> predicate, Consumer<T> consumer) {
+		
+		lockRead();
+		try {
+			visitAt(headAt(location.x, location.y), predicate, consumer, null);
+		} finally {
+			unlockRead();
+		}
+	}
+	
+	/**
+	 * Count the objects held at the given {@link Coord location}, that also
+	 * satisfy the given {@link Predicate predicate}.
+	 * 
+	 * @param location
+	 * @param predicate
+	 *            may be {@code null}, to count every object
+	 * @return
+	 */
+	public int countAt(Coord location, Predicate<T> predicate) {
+		
+		lockRead();
+		try {
+			return visitAt(headAt(location.x, location.y), predicate, null, null);
+		} finally {
+			unlockRead();
 		}
 	}
 	
@@ -109,21 +557,30 @@ public class SpatialMap<T> {
 	 */
 	public Coord getLocation(T value) {
 		
-		synchronized (this) {
-			return objectToCoord.get(value);
+		lockRead();
+		try {
+			final int h = handles.getIfAbsent(value, NONE);
+			return (h == NONE) ? null : handleLocations[h];
+		} finally {
+			unlockRead();
 		}
 	}
 	
 	/**
-	 * Get all locations registered within this map (whether or not they have any
-	 * values associated with them).
+	 * Get all locations which currently have values associated with them.
 	 * 
 	 * @return
 	 */
 	public OrderedSet<Coord> getLocations() {
 		
-		synchronized (this) {
-			return coordToObjects.keysAsOrderedSet();
+		lockRead();
+		try {
+			final OrderedSet<Coord> result = new OrderedSet<>();
+			occupied.forEachCell((x, y) -> result.add(Coord.get(x, y)));
+			outsideHeads.forEachKey(result::add);
+			return result;
+		} finally {
+			unlockRead();
 		}
 	}
 	
@@ -134,8 +591,15 @@ public class SpatialMap<T> {
 	 */
 	public OrderedSet<T> getValues() {
 		
-		synchronized (this) {
-			return objectToCoord.keysAsOrderedSet();
+		lockRead();
+		try {
+			final OrderedSet<T> result = new OrderedSet<>(handles.size());
+			for (int h = 0; h < handleCount; h++)
+				if (handleLocations[h] != null)
+					result.add(valueOf(h));
+			return result;
+		} finally {
+			unlockRead();
 		}
 	}
 	
@@ -149,30 +613,32 @@ public class SpatialMap<T> {
 	 */
 	public void set(Coord location, T value) {
 		
-		synchronized (this) {
-			final Coord prevLocation = objectToCoord.get(value);
-			if (prevLocation != null)
-				if (prevLocation == location)
-					return;
-				else
-					coordToObjects.get(prevLocation).remove(value);
-				
+		lockWrite();
+		try {
 			if (location == null) {
-				if (prevLocation != null) {
-					recentlyUpdated.add(value);
-					recentUpdates.computeIfAbsent(SpatialOperation.REMOVED, x -> new OrderedSet<>()).add(value);
-				}
+				remove(value);
 				return;
 			}
 			
-			coordToObjects.computeIfAbsent(location, x -> new OrderedSet<>()).add(value);
-			objectToCoord.put(value, location);
+			int h = handles.getIfAbsent(value, NONE);
+			final Coord prevLocation = (h == NONE) ? null : handleLocations[h];
 			
-			recentlyUpdated.add(value);
-			if (prevLocation == null)
-				recentUpdates.computeIfAbsent(SpatialOperation.ADDED, x -> new OrderedSet<>()).add(value);
-			else
-				recentUpdates.computeIfAbsent(SpatialOperation.MOVED, x -> new OrderedSet<>()).add(value);
+			if (prevLocation != null) {
+				if (prevLocation.equals(location))
+					return;
+				unlink(h);
+			} else {
+				h = allocate(value);
+				handles.put(value, h);
+			}
+			
+			link(h, location);
+			fireLocationChanged(value, prevLocation, location);
+			
+			record((prevLocation == null) ? SpatialOperation.ADDED : SpatialOperation.MOVED, value, prevLocation,
+					location);
+		} finally {
+			unlockWrite();
 		}
 	}
 	
@@ -185,15 +651,16 @@ public class SpatialMap<T> {
 	 */
 	public Coord remove(T value) {
 		
-		synchronized (this) {
-			final Coord location = objectToCoord.get(value);
+		lockWrite();
+		try {
+			final Coord location = release(value);
 			if (location != null) {
-				objectToCoord.remove(value);
-				coordToObjects.get(location).remove(value);
-				recentlyUpdated.add(value);
-				recentUpdates.computeIfAbsent(SpatialOperation.REMOVED, x -> new OrderedSet<>()).add(value);
+				fireLocationChanged(value, location, null);
+				record(SpatialOperation.REMOVED, value, location, null);
 			}
 			return location;
+		} finally {
+			unlockWrite();
 		}
 	}
 	
@@ -205,15 +672,15 @@ public class SpatialMap<T> {
 	 */
 	public OrderedSet<T> removeAll(Coord location) {
 		
-		synchronized (this) {
-			final OrderedSet<T> values = coordToObjects.get(location);
-			if (values == null)
-				return new OrderedSet<>();
-			
+		lockWrite();
+		try {
+			final OrderedSet<T> values = getAt(location);
 			for (int i = 0; i < values.size(); i++)
 				remove(values.getAt(i));
 			
 			return values;
+		} finally {
+			unlockWrite();
 		}
 	}
 	
@@ -225,13 +692,19 @@ public class SpatialMap<T> {
 	 */
 	public void markRefresh(Coord location) {
 		
-		synchronized (this) {
-			final OrderedSet<T> values = coordToObjects.get(location);
-			if (values == null)
+		lockWrite();
+		try {
+			final int head = headAt(location.x, location.y);
+			if (head == NONE)
 				return;
 			
-			for (int i = 0; i < values.size(); i++)
-				markRefresh(values.getAt(i));
+			int h = head;
+			do {
+				markRefresh(valueOf(h));
+				h = nextInCell[h];
+			} while (h != head);
+		} finally {
+			unlockWrite();
 		}
 	}
 	
@@ -242,29 +715,48 @@ public class SpatialMap<T> {
 	 */
 	public void markRefresh(T value) {
 		
-		synchronized (this) {
-			recentUpdates.computeIfAbsent(SpatialOperation.REFRESH, x -> new OrderedSet<>()).add(value);
-			recentlyUpdated.add(value);
+		lockWrite();
+		try {
+			final Coord location = getLocation(value);
+			record(SpatialOperation.REFRESH, value, location, location);
+		} finally {
+			unlockWrite();
 		}
 	}
 	
 	/**
-	 * Reset this map. Leaves no record behind for
-	 * {@link #getRecentlyUpdated(SpatialOperation) getRecentlyUpdated(REMOVE)}
+	 * Reset this map. Leaves no record behind in the change-journal -- not even of
+	 * {@link SpatialOperation#REMOVED removals} -- and discards anything that
+	 * hadn't been read from it yet.
 	 */
 	public void clear() {
 		
-		synchronized (this) {
-			coordToObjects.clear();
-			objectToCoord.clear();
-			recentlyUpdated.clear();
-			recentUpdates.clear();
+		lockWrite();
+		try {
+			for (int h = 0; h < handleCount; h++)
+				if (handleLocations[h] != null)
+					fireLocationChanged(valueOf(h), handleLocations[h], null);
+			
+			handles.clear();
+			Arrays.fill(handleValues, 0, handleCount, null);
+			Arrays.fill(handleLocations, 0, handleCount, null);
+			handleCount = 0;
+			freeHandles = NONE;
+			
+			Arrays.fill(headChunks, null);
+			outsideHeads.clear();
+			occupied.clear();
+			version++;
+			
+			discardJournal(journalEnd);
+		} finally {
+			unlockWrite();
 		}
 	}
 	
 	/**
-	 * Remove all references to the given value from this map (including all
-	 * {@link #getRecentlyUpdated() "recently-updated"} records). This is really
+	 * Remove all references to the given value from this map (including all of its
+	 * unread entries in the change-journal). This is really
 	 * intended if you need to discard all references to an instance because, e.g.,
 	 * you need to recycle it into an instance-pool.
 	 * 
@@ -272,93 +764,608 @@ public class SpatialMap<T> {
 	 */
 	protected void hardRemove(T value) {
 		
-		synchronized (this) {
-			final Coord c = objectToCoord.remove(value);
+		lockWrite();
+		try {
+			final Coord c = release(value);
 			if (c != null)
-				coordToObjects.get(c).remove(value);
-			recentlyUpdated.remove(value);
-			recentUpdates.forEach((op, s) -> s.remove(value));
+				fireLocationChanged(value, c, null);
+			
+			final int mask = journalValues.length - 1;
+			for (long sequence = journalStart; sequence < journalEnd; sequence++) {
+				final int i = (int) (sequence & mask);
+				if (value.equals(journalValues[i])) {
+					journalValues[i] = null;
+					journalFrom[i] = null;
+					journalTo[i] = null;
+				}
+			}
+		} finally {
+			unlockWrite();
 		}
 	}
 	
 	/**
-	 * Get a list of values that have been updated (whether added, moved, or
-	 * removed) since the last call to {@link #resetRecentlyUpdated()}.
+	 * Visit every value held within the given region. The occupancy region and the
+	 * given region are intersected a word at a time, so only occupied locations
+	 * are visited.
 	 * 
-	 * @return
+	 * @param region
+	 * @param predicate
+	 *            may be {@code null}, to accept every value
+	 * @param consumer
+	 *            may be {@code null}
+	 * @param into
+	 *            may be {@code null}
+	 * @return the number of values accepted
+	 * @see #visitAt(int, Predicate, Consumer, Collection)
 	 */
-	public OrderedSet<T> getRecentlyUpdated() {
+	private int visitWithin(GreasedRegion region, Predicate<T> predicate, Consumer<T> consumer,
+			Collection<? super T> into) {
+		
+		final int ySections = (occupied.height + 63) >> 6, regionYSections = (region.height + 63) >> 6;
+		final int width = Math.min(occupied.width, region.width), sections = Math.min(ySections, regionYSections);
 		
-		return recentlyUpdated;
+		int count = 0;
+		for (int x = 0; x < width; x++) {
+			for (int s = 0; s < sections; s++) {
+				long bits = occupied.data[x * ySections + s] & region.data[x * regionYSections + s];
+				while (bits != 0) {
+					count += visitAt(headAt(x, (s << 6) + Long.numberOfTrailingZeros(bits)), predicate, consumer, into);
+					bits &= bits - 1;
+				}
+			}
+		}
+		return count;
 	}
 	
 	/**
-	 * Get the list of values that have been updated with the given
-	 * {@link SpatialOperation}-type since the last call to
-	 * {@link #resetRecentlyUpdated()}.
+	 * Visit every value in the cell-list starting at the given handle. Each value
+	 * which satisfies {@code predicate} is given to {@code consumer} and added to
+	 * {@code into}.
 	 * 
-	 * @param operation
+	 * @param head
+	 *            may be {@link #NONE}
+	 * @param predicate
+	 *            may be {@code null}, to accept every value
+	 * @param consumer
+	 *            may be {@code null}
+	 * @param into
+	 *            may be {@code null}
+	 * @return the number of values accepted
+	 */
+	private int visitAt(int head, Predicate<T> predicate, Consumer<T> consumer, Collection<? super T> into) {
+		
+		if (head == NONE)
+			return 0;
+		
+		int count = 0;
+		int h = head;
+		do {
+			final T value = valueOf(h);
+			if (predicate == null || predicate.test(value)) {
+				count++;
+				if (consumer != null)
+					consumer.accept(value);
+				if (into != null)
+					into.add(value);
+			}
+			h = nextInCell[h];
+		} while (h != head);
+		
+		return count;
+	}
+	
+	private T valueOf(int handle) {
+		
+		return valueOf(handleValues[handle]);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private T valueOf(Object value) {
+		
+		return (T) value;
+	}
+	
+	/**
+	 * Assign a handle to the given value, re-using a released handle if possible.
+	 * 
+	 * @param value
 	 * @return
 	 */
-	public OrderedSet<T> getRecentlyUpdated(SpatialOperation operation) {
+	private int allocate(T value) {
 		
-		synchronized (this) {
-			return recentUpdates.computeIfAbsent(operation, x -> new OrderedSet<>());
+		final int h;
+		if (freeHandles != NONE) {
+			h = freeHandles;
+			freeHandles = nextInCell[h];
+		} else {
+			if (handleCount == handleValues.length) {
+				final int length = handleCount * 2;
+				handleValues = Arrays.copyOf(handleValues, length);
+				handleLocations = Arrays.copyOf(handleLocations, length);
+				nextInCell = Arrays.copyOf(nextInCell, length);
+				prevInCell = Arrays.copyOf(prevInCell, length);
+			}
+			h = handleCount++;
 		}
+		
+		handleValues[h] = value;
+		return h;
 	}
 	
 	/**
-	 * Remove the given value from the internal record of "recently-updated".
+	 * Un-link the given value from its location, and release its handle.
 	 * 
 	 * @param value
-	 * @see #resetRecentlyUpdated() to reset all recently-updated
+	 * @return the value's location, or {@code null} if it had none
+	 */
+	private Coord release(T value) {
+		
+		final int h = handles.getIfAbsent(value, NONE);
+		if (h == NONE)
+			return null;
+		
+		final Coord location = handleLocations[h];
+		unlink(h);
+		handles.remove(value);
+		
+		handleValues[h] = null;
+		handleLocations[h] = null;
+		nextInCell[h] = freeHandles;
+		freeHandles = h;
+		version++;
+		
+		return location;
+	}
+	
+	/**
+	 * Add the given handle to the end of the given location's cell-list.
+	 * 
+	 * @param h
+	 * @param location
+	 */
+	private void link(int h, Coord location) {
+		
+		handleLocations[h] = location;
+		version++;
+		
+		final int head = headAt(location.x, location.y);
+		if (head == NONE) {
+			nextInCell[h] = h;
+			prevInCell[h] = h;
+			setHeadAt(location, h);
+			if (location.x >= 0 && location.y >= 0)
+				occupied.insert(location);
+			return;
+		}
+		
+		final int tail = prevInCell[head];
+		nextInCell[tail] = h;
+		prevInCell[h] = tail;
+		nextInCell[h] = head;
+		prevInCell[head] = h;
+	}
+	
+	/**
+	 * Remove the given handle from its location's cell-list.
+	 * 
+	 * @param h
 	 */
-	public void resetRecentlyUpdated(T value) {
+	private void unlink(int h) {
+		
+		final Coord location = handleLocations[h];
 		
-		synchronized (this) {
-			recentlyUpdated.remove(value);
-			recentUpdates.forEach((op, s) -> s.remove(value));
+		if (nextInCell[h] == h) {
+			setHeadAt(location, NONE);
+			occupied.remove(location);
+			return;
 		}
+		
+		final int next = nextInCell[h], prev = prevInCell[h];
+		nextInCell[prev] = next;
+		prevInCell[next] = prev;
+		if (headAt(location.x, location.y) == h)
+			setHeadAt(location, next);
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @return the first handle in the given location's cell-list, or {@link #NONE}
+	 *         if that location holds no values
+	 */
+	private int headAt(int x, int y) {
+		
+		if (x < 0 || y < 0)
+			return outsideHeads.getIfAbsent(Coord.get(x, y), NONE);
+		
+		final int cx = x >> CHUNK_SHIFT, cy = y >> CHUNK_SHIFT;
+		if (cx >= chunksWide || cy >= chunksHigh)
+			return NONE;
+		
+		final int[] chunk = headChunks[cx * chunksHigh + cy];
+		if (chunk == null)
+			return NONE;
+		return chunk[((x & CHUNK_MASK) << CHUNK_SHIFT) | (y & CHUNK_MASK)];
 	}
 	
 	/**
-	 * Remove the given value from the internal record of "recently-updated" for the
-	 * give {@link SpatialOperation}-type.
+	 * Set the first handle in the given location's cell-list, allocating (or
+	 * growing) the grid as necessary, or copying its chunk first if it might be
+	 * shared with a snapshot.
 	 * 
-	 * @param operation
-	 * @param value
+	 * @param location
+	 * @param h
+	 *            {@link #NONE} if the location no longer holds any values
+	 */
+	private void setHeadAt(Coord location, int h) {
+		
+		if (location.x < 0 || location.y < 0) {
+			if (h == NONE)
+				outsideHeads.remove(location);
+			else
+				outsideHeads.put(location, h);
+			return;
+		}
+		
+		final int cx = location.x >> CHUNK_SHIFT, cy = location.y >> CHUNK_SHIFT;
+		if (cx >= chunksWide || cy >= chunksHigh) {
+			if (h == NONE)
+				return;
+			grow(Math.max(chunksWide, cx + 1), Math.max(chunksHigh, cy + 1));
+		}
+		
+		final int ci = cx * chunksHigh + cy;
+		int[] chunk = headChunks[ci];
+		if (chunk == null) {
+			if (h == NONE)
+				return;
+			chunk = new int[CHUNK_CELLS];
+			Arrays.fill(chunk, NONE);
+			headChunks[ci] = chunk;
+			chunkEpochs[ci] = epoch;
+		} else if (chunkEpochs[ci] != epoch) {
+			chunk = chunk.clone();
+			headChunks[ci] = chunk;
+			chunkEpochs[ci] = epoch;
+		}
+		
+		chunk[((location.x & CHUNK_MASK) << CHUNK_SHIFT) | (location.y & CHUNK_MASK)] = h;
+	}
+	
+	/**
+	 * Grow the head-index grid (and the occupancy region) to hold at least the
+	 * given number of chunks on each side.
+	 * 
+	 * @param minChunksWide
+	 * @param minChunksHigh
+	 */
+	private void grow(int minChunksWide, int minChunksHigh) {
+		
+		final int newChunksWide = (minChunksWide > chunksWide) ? Math.max(chunksWide * 2, minChunksWide)
+				: chunksWide;
+		final int newChunksHigh = (minChunksHigh > chunksHigh) ? Math.max(chunksHigh * 2, minChunksHigh)
+				: chunksHigh;
+		
+		final int[][] newHeadChunks = new int[newChunksWide * newChunksHigh][];
+		final long[] newChunkEpochs = new long[newChunksWide * newChunksHigh];
+		for (int cx = 0; cx < chunksWide; cx++) {
+			System.arraycopy(headChunks, cx * chunksHigh, newHeadChunks, cx * newChunksHigh, chunksHigh);
+			System.arraycopy(chunkEpochs, cx * chunksHigh, newChunkEpochs, cx * newChunksHigh, chunksHigh);
+		}
+		
+		headChunks = newHeadChunks;
+		chunkEpochs = newChunkEpochs;
+		chunksWide = newChunksWide;
+		chunksHigh = newChunksHigh;
+		
+		final int width = chunksWide << CHUNK_SHIFT, height = chunksHigh << CHUNK_SHIFT;
+		if (width > occupied.width || height > occupied.height)
+			occupied = new ExtGreasedRegion(Math.max(width, occupied.width), Math.max(height, occupied.height))
+					.insertWindow(0, 0, occupied);
+	}
+	
+	/**
+	 * Open a new {@link JournalCursor} onto this map's change-journal. The cursor
+	 * starts at the end of the journal, and so will only see changes made after
+	 * this point -- you'll probably want to look at the map's current contents
+	 * first.
+	 * <p>
+	 * Until it is {@link #closeCursor(JournalCursor) closed}, every change read by
+	 * this cursor is retained -- so be sure to read from it regularly.
+	 * </p>
+	 * 
+	 * @return
 	 */
-	public void resetRecentlyUpdated(SpatialOperation operation, T value) {
+	public JournalCursor openCursor() {
 		
-		synchronized (this) {
-			if (recentUpdates.get(operation) != null)
-				recentUpdates.get(operation).remove(value);
+		lockWrite();
+		try {
+			final JournalCursor cursor = new JournalCursor(journalEnd);
+			cursors.add(cursor);
+			return cursor;
+		} finally {
+			unlockWrite();
+		}
+	}
+	
+	/**
+	 * Open a new {@link JournalCursor} onto this map's change-journal, and add
+	 * every value this map currently holds to the given collection -- both at
+	 * once, so that the cursor picks up exactly where those contents leave off.
+	 * 
+	 * @param contents
+	 * @return
+	 * @see #openCursor()
+	 */
+	public JournalCursor openCursor(Collection<? super T> contents) {
+		
+		lockWrite();
+		try {
+			for (int h = 0; h < handleCount; h++)
+				if (handleLocations[h] != null)
+					contents.add(valueOf(h));
+			return openCursor();
+		} finally {
+			unlockWrite();
+		}
+	}
+	
+	/**
+	 * Close the given {@link JournalCursor}, allowing the changes it hadn't yet
+	 * read to be discarded.
+	 * 
+	 * @param cursor
+	 */
+	public void closeCursor(JournalCursor cursor) {
+		
+		lockWrite();
+		try {
+			if (cursors.remove(cursor))
+				compactJournal();
+		} finally {
+			unlockWrite();
+		}
+	}
+	
+	/**
+	 * Give every change journalled since the given {@link JournalCursor} last read
+	 * to the given {@link ChangeVisitor}, in order, and advance the cursor past
+	 * them. No other cursor is affected.
+	 * <p>
+	 * The visitor is called while this map is locked, and must not modify it.
+	 * </p>
+	 * 
+	 * @param cursor
+	 * @param visitor
+	 * @return the number of changes visited
+	 * @throws IllegalArgumentException
+	 *             if the cursor isn't open on this map
+	 */
+	public int readChanges(JournalCursor cursor, ChangeVisitor<T> visitor) {
+		
+		lockWrite();
+		try {
+			if (!cursors.contains(cursor))
+				throw new IllegalArgumentException("Cannot read changes -- cursor is not open on this map.");
 			
-			boolean anyStillExist = false;
-			for (int i = 0; i < SpatialOperation.values().length; i++) {
-				final SpatialOperation op = SpatialOperation.values()[i];
-				if (recentUpdates.get(op) != null && recentUpdates.get(op).contains(value)) {
-					anyStillExist = true;
-					break;
-				}
+			final int mask = journalValues.length - 1;
+			int count = 0;
+			for (long sequence = Math.max(cursor.position, journalStart); sequence < journalEnd; sequence++) {
+				final int i = (int) (sequence & mask);
+				if (journalValues[i] == null)
+					continue;
+				
+				visitor.change(sequence, journalOperations[i], valueOf(journalValues[i]), journalFrom[i],
+						journalTo[i]);
+				count++;
 			}
 			
-			if (!anyStillExist)
-				recentlyUpdated.remove(value);
+			cursor.position = journalEnd;
+			compactJournal();
+			
+			return count;
+		} finally {
+			unlockWrite();
+		}
+	}
+	
+	/**
+	 * @return the sequence-number that will be given to the next journalled change
+	 */
+	public long getJournalSequence() {
+		
+		lockRead();
+		try {
+			return journalEnd;
+		} finally {
+			unlockRead();
 		}
 	}
 	
 	/**
-	 * Reset the list of recently-updated values.
+	 * Take this map's read-lock -- unless this map is a {@link #snapshot()
+	 * snapshot}, which never changes, and so needs no lock.
+	 */
+	private void lockRead() {
+		
+		if (!readOnly)
+			lock.readLock().lock();
+	}
+	
+	private void unlockRead() {
+		
+		if (!readOnly)
+			lock.readLock().unlock();
+	}
+	
+	/**
+	 * Take this map's write-lock.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if this map is a {@link #snapshot() snapshot}
+	 */
+	private void lockWrite() {
+		
+		if (readOnly)
+			throw new UnsupportedOperationException("Cannot modify a SpatialMap snapshot.");
+		lock.writeLock().lock();
+	}
+	
+	private void unlockWrite() {
+		
+		lock.writeLock().unlock();
+	}
+	
+	/**
+	 * Append a change to the journal -- if there's anyone to read it.
 	 * 
-	 * @see #resetRecentlyUpdated(Object) to reset for only one value
+	 * @param operation
+	 * @param value
+	 * @param from
+	 * @param to
 	 */
-	public void resetRecentlyUpdated() {
+	private void record(SpatialOperation operation, T value, Coord from, Coord to) {
 		
-		synchronized (this) {
-			recentlyUpdated.clear();
-			recentUpdates.forEach((op, v) -> v.clear());
+		if (cursors.isEmpty()) {
+			journalStart = ++journalEnd;
+			return;
 		}
+		
+		if (journalEnd - journalStart == journalValues.length)
+			growJournal();
+		
+		final int i = (int) (journalEnd & (journalValues.length - 1));
+		journalOperations[i] = operation;
+		journalValues[i] = value;
+		journalFrom[i] = from;
+		journalTo[i] = to;
+		journalEnd++;
+	}
+	
+	/**
+	 * Double the journal's capacity, keeping its entries at their sequence-numbers.
+	 */
+	private void growJournal() {
+		
+		final int oldMask = journalValues.length - 1, capacity = journalValues.length * 2, mask = capacity - 1;
+		
+		final SpatialOperation[] operations = new SpatialOperation[capacity];
+		final Object[] values = new Object[capacity];
+		final Coord[] from = new Coord[capacity], to = new Coord[capacity];
+		for (long sequence = journalStart; sequence < journalEnd; sequence++) {
+			final int i = (int) (sequence & oldMask), j = (int) (sequence & mask);
+			operations[j] = journalOperations[i];
+			values[j] = journalValues[i];
+			from[j] = journalFrom[i];
+			to[j] = journalTo[i];
+		}
+		
+		journalOperations = operations;
+		journalValues = values;
+		journalFrom = from;
+		journalTo = to;
+	}
+	
+	/**
+	 * Discard every journalled change which every open cursor has read.
+	 */
+	private void compactJournal() {
+		
+		long oldest = journalEnd;
+		for (int i = 0; i < cursors.size(); i++)
+			oldest = Math.min(oldest, cursors.getAt(i).position);
+		
+		discardJournal(oldest);
+	}
+	
+	/**
+	 * Discard every journalled change before the given sequence-number.
+	 * 
+	 * @param sequence
+	 */
+	private void discardJournal(long sequence) {
+		
+		final int mask = journalValues.length - 1;
+		for (; journalStart < sequence; journalStart++) {
+			final int i = (int) (journalStart & mask);
+			journalOperations[i] = null;
+			journalValues[i] = null;
+			journalFrom[i] = null;
+			journalTo[i] = null;
+		}
+	}
+	
+	/**
+	 * Receives notice of a single value's change of location.
+	 * <p>
+	 * Note that listeners are called while the {@link SpatialMap} is locked -- so
+	 * they should be quick, and should not try to take any other locks.
+	 * </p>
+	 * 
+	 * @author snowjak88
+	 *
+	 * @param <T>
+	 */
+	@FunctionalInterface
+	public interface LocationListener<T> {
+		
+		/**
+		 * @param value
+		 * @param from
+		 *            {@code null} if the value was just added
+		 * @param to
+		 *            {@code null} if the value was just removed
+		 */
+		public void locationChanged(T value, Coord from, Coord to);
+	}
+	
+	/**
+	 * A consumer's position in a {@link SpatialMap}'s change-journal.
+	 * 
+	 * @author snowjak88
+	 *
+	 * @see SpatialMap#openCursor()
+	 */
+	public static class JournalCursor {
+		
+		private long position;
+		
+		private JournalCursor(long position) {
+			
+			this.position = position;
+		}
+		
+		/**
+		 * @return the sequence-number of the next change this cursor will read
+		 */
+		public long getPosition() {
+			
+			return position;
+		}
+	}
+	
+	/**
+	 * Receives a single change from a {@link SpatialMap}'s change-journal.
+	 * 
+	 * @author snowjak88
+	 *
+	 * @param <T>
+	 */
+	@FunctionalInterface
+	public interface ChangeVisitor<T> {
+		
+		/**
+		 * @param sequence
+		 *            this change's sequence-number
+		 * @param operation
+		 * @param value
+		 * @param from
+		 *            {@code null} if the value was just added
+		 * @param to
+		 *            {@code null} if the value was just removed
+		 */
+		public void change(long sequence, SpatialOperation operation, T value, Coord from, Coord to);
 	}
 	
 	public enum SpatialOperation {
@@ -3,13 +3,17 @@
  */
 package org.snowjak.hivemind.util.cache;
 
-import java.util.LinkedList;
-
-import squidpony.squidmath.OrderedMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
 
 /**
  * Implements a Least-Recently-Used cache where cache-entries are retrieved via
  * some kind of identity-mapping.
+ * <p>
+ * Entries are held in access-order, so finding, touching, and evicting entries
+ * are all constant-time.
+ * </p>
  * 
  * @author snowjak88
  * @param <I>
@@ -19,8 +23,7 @@ import squidpony.squidmath.OrderedMap;
  */
 public class LRUMappedCache<I, E> {
 	
-	private final LinkedList<I> usageOrder = new LinkedList<>();
-	private final OrderedMap<I, E> values = new OrderedMap<>();
+	private final LinkedHashMap<I, E> values = new LinkedHashMap<>(16, 0.75f, true);
 	private final int maxCacheEntries;
 	
 	private final CacheValuePersister<I, E> persister;
@@ -72,10 +75,25 @@ public class LRUMappedCache<I, E> {
 				final E restoredValue = restorer.restore(identity);
 				values.put(identity, (restoredValue != null) ? restoredValue : creator.create(identity));
 				
-			} else
-				usageOrder.remove(identity);
+			}
 			
-			usageOrder.addLast(identity);
+			return values.get(identity);
+		}
+	}
+	
+	/**
+	 * Get the cached value corresponding to the given identity, if this cache
+	 * currently contains it. Unlike {@link #get(Object)}, this method will never
+	 * {@link CacheValueRestorer restore} or {@link CacheValueCreator create} a
+	 * value.
+	 * 
+	 * @param identity
+	 * @return the cached value, or {@code null} if this cache does not contain the
+	 *         given identity
+	 */
+	public E getIfPresent(I identity) {
+		
+		synchronized (this) {
 			return values.get(identity);
 		}
 	}
@@ -92,6 +110,17 @@ public class LRUMappedCache<I, E> {
 		}
 	}
 	
+	/**
+	 * 
+	 * @return the number of entries currently in this cache
+	 */
+	public int size() {
+		
+		synchronized (this) {
+			return values.size();
+		}
+	}
+	
 	/**
 	 * Stores the given value in the cache. This method will
 	 * {@link CacheValuePersister persist} as many entries as necessary to make room
@@ -104,21 +133,35 @@ public class LRUMappedCache<I, E> {
 		
 		synchronized (this) {
 			
-			freeRoomInCache(1);
-			
-			usageOrder.remove(identity);
-			usageOrder.addLast(identity);
+			if (!values.containsKey(identity))
+				freeRoomInCache(1);
 			
 			values.put(identity, value);
 		}
 	}
 	
+	/**
+	 * Remove the given identity from this cache, without
+	 * {@link CacheValuePersister persisting} its value.
+	 * 
+	 * @param identity
+	 * @return the value that was cached, or {@code null} if this cache did not
+	 *         contain the given identity
+	 */
+	public E remove(I identity) {
+		
+		synchronized (this) {
+			return values.remove(identity);
+		}
+	}
+	
 	private void freeRoomInCache(int slotsToFree) {
 		
-		while (values.size() > maxCacheEntries - slotsToFree && !values.isEmpty()) {
-			final I identityToRemove = usageOrder.removeFirst();
-			persister.persist(identityToRemove, values.get(identityToRemove));
-			values.remove(identityToRemove);
+		final Iterator<Entry<I, E>> iterator = values.entrySet().iterator();
+		while (values.size() > maxCacheEntries - slotsToFree && iterator.hasNext()) {
+			final Entry<I, E> toRemove = iterator.next();
+			persister.persist(toRemove.getKey(), toRemove.getValue());
+			iterator.remove();
 		}
 	}
 	
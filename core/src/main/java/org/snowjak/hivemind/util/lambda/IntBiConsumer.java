@@ -0,0 +1,22 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.util.lambda;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Primitive specialization of {@link BiConsumer}, accepting two {@code int}s
+ * (typically, an {@code (x,y)} map-location).
+ * 
+ * @author snowjak88
+ *
+ */
+@FunctionalInterface
+public interface IntBiConsumer {
+	
+	/**
+	 * Performs this operation on the given arguments.
+	 */
+	public void accept(int x, int y);
+}
@@ -0,0 +1,77 @@
+package org.snowjak.hivemind.headless;
+
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+/**
+ * Launches the headless simulation-runner -- no window, no GL context. Steps
+ * the {@link org.snowjak.hivemind.engine.Engine Engine} for a fixed number of
+ * ticks, then reports throughput and {@link org.snowjak.hivemind.util.Profiler
+ * Profiler} results.
+ * <p>
+ * Recognized arguments:
+ * <ul>
+ * <li>{@code --ticks N} -- number of ticks to run (default 1000)</li>
+ * <li>{@code --tps N} -- ticks per second; 0 means "as fast as possible"
+ * (default 0)</li>
+ * <li>{@code --width N}, {@code --height N} -- world-map size (default
+ * 128x128)</li>
+ * <li>{@code --individuals N} -- number of individuals besides the player
+ * (default 8)</li>
+ * <li>{@code --save} -- load the saved world instead of the test-prefab</li>
+ * </ul>
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class HeadlessLauncher {
+	
+	public static void main(String[] args) {
+		
+		final HeadlessSimulation simulation = new HeadlessSimulation();
+		
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--ticks":
+				simulation.setTicks(Integer.parseInt(args[++i]));
+				break;
+			case "--tps":
+				simulation.setTicksPerSecond(Integer.parseInt(args[++i]));
+				break;
+			case "--width":
+				simulation.setWidth(Integer.parseInt(args[++i]));
+				break;
+			case "--height":
+				simulation.setHeight(Integer.parseInt(args[++i]));
+				break;
+			case "--individuals":
+				simulation.setIndividuals(Integer.parseInt(args[++i]));
+				break;
+			case "--save":
+				simulation.setLoadSave(true);
+				break;
+			default:
+				throw new IllegalArgumentException("Unrecognized argument \"" + args[i] + "\".");
+			}
+		}
+		
+		createApplication(simulation);
+	}
+	
+	private static HeadlessApplication createApplication(HeadlessSimulation simulation) {
+		
+		return new HeadlessApplication(simulation, getConfiguration(simulation));
+	}
+	
+	private static HeadlessApplicationConfiguration getConfiguration(HeadlessSimulation simulation) {
+		
+		final HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+		
+		//
+		// A render-interval of 0 means "render as often as possible".
+		configuration.renderInterval = (simulation.getTicksPerSecond() > 0) ? 1f / simulation.getTicksPerSecond() : 0f;
+		
+		return configuration;
+	}
+}
@@ -0,0 +1,176 @@
+/**
+ * 
+ */
+package org.snowjak.hivemind.headless;
+
+import java.io.IOException;
+
+import org.snowjak.hivemind.Context;
+import org.snowjak.hivemind.Factions;
+import org.snowjak.hivemind.Materials;
+import org.snowjak.hivemind.TerrainTypes;
+import org.snowjak.hivemind.concurrent.ContinuousProcess;
+import org.snowjak.hivemind.concurrent.Executor;
+import org.snowjak.hivemind.engine.Engine;
+import org.snowjak.hivemind.engine.EnginePrefabs;
+import org.snowjak.hivemind.util.Profiler;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.ai.GdxAI;
+import com.badlogic.gdx.ai.msg.MessageManager;
+
+import squidpony.squidmath.CoordPacker;
+
+/**
+ * Headless counterpart to {@code App}: loads the world, then steps the
+ * {@link Engine} once per render-call until the configured number of ticks
+ * have elapsed. On exit, reports ticks/second and the {@link Profiler}'s
+ * results.
+ * <p>
+ * Every tick advances the simulation by the same amount of game-time (1 /
+ * ticks-per-second, or 1/60 second if the tick-rate is unbounded), so runs are
+ * comparable regardless of how fast the host machine is.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class HeadlessSimulation extends ApplicationAdapter {
+	
+	private static final float UNBOUNDED_TICK_DELTA = 1f / 60f;
+	
+	private int ticks = 1000, ticksPerSecond = 0;
+	private int width = 128, height = 128, individuals = 8;
+	private boolean loadSave = false;
+	
+	private float tickDelta;
+	private int ticksRun = 0;
+	private long startNanos, endNanos;
+	
+	@Override
+	public void create() {
+		
+		CoordPacker.init();
+		
+		//
+		// Load our static data up-front, so that it isn't counted against the
+		// first tick.
+		TerrainTypes.get();
+		Materials.get();
+		Factions.get();
+		
+		Context.setEngine(new Engine());
+		if (loadSave)
+			try {
+				Context.getEngine().load();
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+				Gdx.app.exit();
+				return;
+			}
+		else
+			EnginePrefabs.loadTest(width, height, individuals);
+		
+		tickDelta = (ticksPerSecond > 0) ? 1f / (float) ticksPerSecond : UNBOUNDED_TICK_DELTA;
+		
+		startNanos = System.nanoTime();
+	}
+	
+	@Override
+	public void render() {
+		
+		if (ticksRun >= ticks)
+			return;
+		
+		GdxAI.getTimepiece().update(tickDelta);
+		MessageManager.getInstance().update();
+		
+		Context.getEngine().update(tickDelta);
+		
+		ticksRun++;
+		if (ticksRun >= ticks) {
+			endNanos = System.nanoTime();
+			Gdx.app.exit();
+		}
+	}
+	
+	@Override
+	public void dispose() {
+		
+		ContinuousProcess.getActiveProcesses().forEach(p -> p.stop());
+		Executor.get().shutdownNow();
+		
+		if (ticksRun > 0) {
+			final double seconds = (double) (endNanos - startNanos) * 1e-9;
+			
+			System.out.println();
+			final String world = (loadSave) ? "saved world"
+					: width + "x" + height + ", " + individuals + " individuals";
+			System.out.printf("Ran %d ticks (%s) in %.3f s -- %.2f ticks/s%n", ticksRun, world, seconds,
+					(double) ticksRun / seconds);
+		}
+		
+		Profiler.get().report();
+	}
+	
+	public int getTicks() {
+		
+		return ticks;
+	}
+	
+	public void setTicks(int ticks) {
+		
+		this.ticks = ticks;
+	}
+	
+	public int getTicksPerSecond() {
+		
+		return ticksPerSecond;
+	}
+	
+	public void setTicksPerSecond(int ticksPerSecond) {
+		
+		this.ticksPerSecond = ticksPerSecond;
+	}
+	
+	public int getWidth() {
+		
+		return width;
+	}
+	
+	public void setWidth(int width) {
+		
+		this.width = width;
+	}
+	
+	public int getHeight() {
+		
+		return height;
+	}
+	
+	public void setHeight(int height) {
+		
+		this.height = height;
+	}
+	
+	public int getIndividuals() {
+		
+		return individuals;
+	}
+	
+	public void setIndividuals(int individuals) {
+		
+		this.individuals = individuals;
+	}
+	
+	public boolean isLoadSave() {
+		
+		return loadSave;
+	}
+	
+	public void setLoadSave(boolean loadSave) {
+		
+		this.loadSave = loadSave;
+	}
+}